@@ -0,0 +1,69 @@
+package org.rg.finance;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class BalanceSnapshot {
+	private final String[] coinNames;
+	private final double[] quantities;
+	private final double[] unitPrices;
+	private final double[] amounts;
+	private final double total;
+	private final long time;
+
+	BalanceSnapshot(String[] coinNames, double[] quantities, double[] unitPrices) {
+		this.coinNames = coinNames;
+		this.quantities = quantities;
+		this.unitPrices = unitPrices;
+		this.amounts = new double[coinNames.length];
+		double total = 0D;
+		for (int i = 0; i < coinNames.length; i++) {
+			total += amounts[i] = quantities[i] * unitPrices[i];
+		}
+		this.total = total;
+		this.time = System.currentTimeMillis();
+	}
+
+	public double getTotal() {
+		return total;
+	}
+
+	public long getTime() {
+		return time;
+	}
+
+	public List<String> getCoinNames() {
+		return Collections.unmodifiableList(Arrays.asList(coinNames));
+	}
+
+	public double getQuantity(String coinName) {
+		int index = indexOf(coinName);
+		return index >= 0 ? quantities[index] : 0D;
+	}
+
+	public double getUnitPrice(String coinName) {
+		int index = indexOf(coinName);
+		return index >= 0 ? unitPrices[index] : Double.NaN;
+	}
+
+	public double getAmount(String coinName) {
+		int index = indexOf(coinName);
+		return index >= 0 ? amounts[index] : 0D;
+	}
+
+	public Map<String, Double> getAmounts() {
+		Map<String, Double> amounts = new LinkedHashMap<>();
+		for (int i = 0; i < coinNames.length; i++) {
+			amounts.put(coinNames[i], this.amounts[i]);
+		}
+		return amounts;
+	}
+
+	private int indexOf(String coinName) {
+		return Arrays.binarySearch(coinNames, coinName);
+	}
+
+}
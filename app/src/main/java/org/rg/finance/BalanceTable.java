@@ -0,0 +1,117 @@
+package org.rg.finance;
+
+//Laid out as PriceTable: the entries are never removed, the assets no longer held keep a zero quantity
+public class BalanceTable {
+	private String[] assets;
+	private double[] quantities;
+	private double[] stakes;
+	private int size;
+
+	public BalanceTable() {
+		this(16);
+	}
+
+	public BalanceTable(int expectedSize) {
+		int capacity = 16;
+		while (capacity < expectedSize * 2) {
+			capacity <<= 1;
+		}
+		this.assets = new String[capacity];
+		this.quantities = new double[capacity];
+		this.stakes = new double[capacity];
+	}
+
+	public BalanceTable(BalanceTable balanceTable) {
+		this.assets = balanceTable.assets.clone();
+		this.quantities = balanceTable.quantities.clone();
+		this.stakes = balanceTable.stakes.clone();
+		this.size = balanceTable.size;
+	}
+
+	public void put(String asset, double quantity) {
+		put(asset, quantity, 0D);
+	}
+
+	public void put(String asset, double quantity, double stake) {
+		int index = indexFor(asset);
+		quantities[index] = quantity;
+		stakes[index] = stake;
+	}
+
+	public void add(String asset, double quantity) {
+		quantities[indexFor(asset)] += quantity;
+	}
+
+	public double getQuantity(String asset) {
+		int index = indexOf(assets, asset);
+		return assets[index] != null ? quantities[index] : 0D;
+	}
+
+	public double getStake(String asset) {
+		int index = indexOf(assets, asset);
+		return assets[index] != null ? stakes[index] : 0D;
+	}
+
+	public boolean contains(String asset) {
+		return assets[indexOf(assets, asset)] != null;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public void forEach(Visitor visitor) {
+		for (int i = 0; i < assets.length; i++) {
+			if (assets[i] != null) {
+				visitor.visit(assets[i], quantities[i], stakes[i]);
+			}
+		}
+	}
+
+	private int indexFor(String asset) {
+		int index = indexOf(assets, asset);
+		if (assets[index] == null) {
+			assets[index] = asset;
+			if (++size * 2 > assets.length) {
+				resize();
+				index = indexOf(assets, asset);
+			}
+		}
+		return index;
+	}
+
+	private void resize() {
+		String[] oldAssets = assets;
+		double[] oldQuantities = quantities;
+		double[] oldStakes = stakes;
+		assets = new String[oldAssets.length * 2];
+		quantities = new double[oldAssets.length * 2];
+		stakes = new double[oldAssets.length * 2];
+		for (int i = 0; i < oldAssets.length; i++) {
+			if (oldAssets[i] != null) {
+				int index = indexOf(assets, oldAssets[i]);
+				assets[index] = oldAssets[i];
+				quantities[index] = oldQuantities[i];
+				stakes[index] = oldStakes[i];
+			}
+		}
+	}
+
+	private static int indexOf(String[] assets, String asset) {
+		int mask = assets.length - 1;
+		int hash = asset.hashCode();
+		int index = (hash ^ (hash >>> 16)) & mask;
+		while (assets[index] != null && !assets[index].equals(asset)) {
+			index = (index + 1) & mask;
+		}
+		return index;
+	}
+
+	@FunctionalInterface
+	public static interface Visitor {
+
+		public void visit(String asset, double quantity, double stake);
+
+	}
+
+}
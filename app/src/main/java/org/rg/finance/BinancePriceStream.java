@@ -0,0 +1,102 @@
+package org.rg.finance;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.rg.util.Throwables;
+import org.rg.util.WebSocketSession;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+public class BinancePriceStream {
+    public static final String DEFAULT_URL = "wss://stream.binance.com:9443/stream";
+    private static final String STREAM_NAME = "!miniTicker@arr";
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    private final Map<String, Double> prices;
+    private final WebSocketSession session;
+    private long maxPriceAge;
+
+    public BinancePriceStream() {
+        this(DEFAULT_URL);
+    }
+
+    public BinancePriceStream(String url) {
+        this.prices = new ConcurrentHashMap<>();
+        this.maxPriceAge = 10000L;
+        this.session = new WebSocketSession("Binance price stream", url)
+            .whenOpened(this::subscribe)
+            .whenAMessageIsReceived(this::process)
+            .reconnectIfSilentFor(30000L);
+    }
+
+    public BinancePriceStream open() {
+        session.open();
+        return this;
+    }
+
+    public void close() {
+        session.close();
+        prices.clear();
+    }
+
+    public boolean isAlive() {
+        return session.isConnected() && System.currentTimeMillis() - session.getLastMessageTime() < maxPriceAge;
+    }
+
+    public Double getPrice(String symbol) {
+        return isAlive() ? prices.get(symbol) : null;
+    }
+
+    public void setMaxPriceAge(long maxPriceAge) {
+        this.maxPriceAge = maxPriceAge;
+    }
+
+    private void subscribe(WebSocketSession session) {
+        session.send("{\"method\":\"SUBSCRIBE\",\"params\":[\"" + STREAM_NAME + "\"],\"id\":" + System.currentTimeMillis() + "}");
+    }
+
+    private void process(String message) {
+        try (JsonParser parser = jsonFactory.createParser(message)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                if ("data".equals(fieldName) && token == JsonToken.START_ARRAY) {
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        processTicker(parser);
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } catch (IOException exc) {
+            Throwables.sneakyThrow(exc);
+        }
+    }
+
+    private void processTicker(JsonParser parser) throws IOException {
+        String symbol = null;
+        String closePrice = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            parser.nextToken();
+            if ("s".equals(fieldName)) {
+                symbol = parser.getText();
+            } else if ("c".equals(fieldName)) {
+                closePrice = parser.getText();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        if (symbol != null && closePrice != null) {
+            prices.put(symbol, Double.valueOf(closePrice));
+        }
+    }
+
+}
@@ -0,0 +1,245 @@
+package org.rg.finance;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.rg.util.LoggerChain;
+import org.rg.util.Throwables;
+import org.rg.util.WebSocketSession;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+public class BinanceUserDataStream {
+    public static final String DEFAULT_URL = "wss://stream.binance.com:9443/ws/";
+    private static final long KEEP_ALIVE_INTERVAL = 30L * 60L * 1000L;
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    private final String baseUrl;
+    private final Supplier<CompletableFuture<String>> listenKeyCreator;
+    private final Function<String, CompletableFuture<?>> listenKeyKeeper;
+    private final BalanceListener balanceListener;
+    private final Consumer<Boolean> connectionListener;
+    private volatile WebSocketSession session;
+    private String listenKey;
+    private boolean active;
+    //Incremented every time the stream is opened, closed or renewed, so that the listen key requests that
+    //complete afterwards are discarded
+    private long generation;
+    private ScheduledFuture<?> keepAliveTask;
+    private ScheduledFuture<?> retryTask;
+
+    //The listen key requests are asynchronous: the scheduler thread, which is shared by all the sessions,
+    //only opens the socket and the lock of the stream is never held while waiting for them
+    public BinanceUserDataStream(
+        String baseUrl,
+        Supplier<CompletableFuture<String>> listenKeyCreator,
+        Function<String, CompletableFuture<?>> listenKeyKeeper,
+        BalanceListener balanceListener,
+        Consumer<Boolean> connectionListener
+    ) {
+        this.baseUrl = baseUrl;
+        this.listenKeyCreator = listenKeyCreator;
+        this.listenKeyKeeper = listenKeyKeeper;
+        this.balanceListener = balanceListener;
+        this.connectionListener = connectionListener;
+    }
+
+    public BinanceUserDataStream open() {
+        long generation;
+        synchronized (this) {
+            if (active) {
+                return this;
+            }
+            active = true;
+            generation = ++this.generation;
+        }
+        start(generation);
+        return this;
+    }
+
+    public void close() {
+        WebSocketSession session;
+        synchronized (this) {
+            if (!active) {
+                return;
+            }
+            active = false;
+            generation++;
+            cancel(keepAliveTask);
+            keepAliveTask = null;
+            cancel(retryTask);
+            retryTask = null;
+            listenKey = null;
+            session = this.session;
+            this.session = null;
+        }
+        if (session != null) {
+            session.close();
+        }
+    }
+
+    public boolean isConnected() {
+        WebSocketSession session = this.session;
+        return session != null && session.isConnected();
+    }
+
+    private void start(long generation) {
+        CompletableFuture<String> listenKeyCreation;
+        try {
+            listenKeyCreation = listenKeyCreator.get();
+        } catch (Throwable exc) {
+            listenKeyCreation = new CompletableFuture<>();
+            listenKeyCreation.completeExceptionally(exc);
+        }
+        listenKeyCreation.whenComplete((listenKey, exc) ->
+            WebSocketSession.getScheduler().execute(() -> onListenKeyCreated(generation, listenKey, exc))
+        );
+    }
+
+    private synchronized void onListenKeyCreated(long generation, String listenKey, Throwable exc) {
+        if (!active || generation != this.generation) {
+            return;
+        }
+        if (exc != null || listenKey == null) {
+            LoggerChain.getInstance().logDebug("Unable to create Binance listen key: " + (exc != null ? exc.getMessage() : "no key received"));
+            retryTask = WebSocketSession.getScheduler().schedule(() -> start(generation), 60, TimeUnit.SECONDS);
+            return;
+        }
+        this.listenKey = listenKey;
+        //Opening only enqueues the connection
+        session = new WebSocketSession("Binance user data stream", baseUrl + listenKey)
+            .whenOpened(session -> connectionListener.accept(true))
+            .whenDisconnected(() -> connectionListener.accept(false))
+            .whenAMessageIsReceived(this::process)
+            .open();
+        if (keepAliveTask == null) {
+            keepAliveTask = WebSocketSession.getScheduler().scheduleWithFixedDelay(
+                this::keepAlive, KEEP_ALIVE_INTERVAL, KEEP_ALIVE_INTERVAL, TimeUnit.MILLISECONDS
+            );
+        }
+    }
+
+    private void renew(long expiredGeneration) {
+        WebSocketSession session;
+        long generation;
+        synchronized (this) {
+            if (!active || expiredGeneration != this.generation) {
+                return;
+            }
+            generation = ++this.generation;
+            cancel(retryTask);
+            retryTask = null;
+            listenKey = null;
+            session = this.session;
+            this.session = null;
+        }
+        if (session != null) {
+            session.close();
+        }
+        start(generation);
+    }
+
+    private void keepAlive() {
+        String listenKey;
+        long generation;
+        synchronized (this) {
+            listenKey = this.listenKey;
+            generation = this.generation;
+        }
+        if (listenKey == null) {
+            return;
+        }
+        CompletableFuture<?> keeping;
+        try {
+            keeping = listenKeyKeeper.apply(listenKey);
+        } catch (Throwable exc) {
+            keeping = new CompletableFuture<>();
+            keeping.completeExceptionally(exc);
+        }
+        keeping.whenComplete((result, exc) -> {
+            if (exc != null) {
+                LoggerChain.getInstance().logDebug("Unable to keep alive Binance listen key: " + exc.getMessage());
+                renew(generation);
+            }
+        });
+    }
+
+    private synchronized long getGeneration() {
+        return generation;
+    }
+
+    private void cancel(ScheduledFuture<?> task) {
+        if (task != null) {
+            task.cancel(false);
+        }
+    }
+
+    private void process(String message) {
+        try (JsonParser parser = jsonFactory.createParser(message)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return;
+            }
+            String eventType = null;
+            long eventTime = 0L;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                if ("e".equals(fieldName)) {
+                    eventType = parser.getText();
+                    if ("listenKeyExpired".equals(eventType)) {
+                        long generation = getGeneration();
+                        WebSocketSession.getScheduler().execute(() -> renew(generation));
+                        return;
+                    }
+                } else if ("E".equals(fieldName)) {
+                    eventTime = parser.getLongValue();
+                } else if ("B".equals(fieldName) && token == JsonToken.START_ARRAY && "outboundAccountPosition".equals(eventType)) {
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        processBalance(parser, eventTime);
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } catch (IOException exc) {
+            Throwables.sneakyThrow(exc);
+        }
+    }
+
+    private void processBalance(JsonParser parser, long eventTime) throws IOException {
+        String asset = null;
+        double free = 0D;
+        double locked = 0D;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            parser.nextToken();
+            if ("a".equals(fieldName)) {
+                asset = parser.getText();
+            } else if ("f".equals(fieldName)) {
+                free = parser.getValueAsDouble();
+            } else if ("l".equals(fieldName)) {
+                locked = parser.getValueAsDouble();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        if (asset != null) {
+            balanceListener.accept(asset, free + locked, eventTime);
+        }
+    }
+
+    @FunctionalInterface
+    public static interface BalanceListener {
+
+        public void accept(String asset, double quantity, long eventTime);
+
+    }
+
+}
@@ -1,31 +1,42 @@
 package org.rg.finance;
 
+import java.io.IOException;
+import java.net.URI;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
-
-import org.rg.util.Hex;
+import org.rg.util.CachedSupplier;
+import org.rg.util.RateLimiter;
+import org.rg.util.Throwables;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
-import org.springframework.http.ResponseEntity;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponents;
 import org.springframework.web.util.UriComponentsBuilder;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
 @SuppressWarnings({ "rawtypes", "unchecked" })
 public class BinanceWallet extends Wallet.Abst {
+    //Not coalesced: a shared response would be timed against the round trip of another request
     private final Supplier<Long> currentTimeMillisFromBinanceServersRetriever = () -> {
         UriComponents uriComponents = UriComponentsBuilder.newInstance().scheme("https").host("api.binance.com")
                 .pathSegment("api")
@@ -33,13 +44,28 @@ public class BinanceWallet extends Wallet.Abst {
                 .pathSegment("time").build();
         HttpHeaders headers = new HttpHeaders();
         headers.add("X-MBX-APIKEY", apiKey);
-        ResponseEntity<Map> response = restTemplate.exchange(uriComponents.toString(), HttpMethod.GET, new HttpEntity<String>(headers), Map.class);
-        return (Long)response.getBody().get("serverTime");
+        return readJson(uriComponents.toString(), HttpMethod.GET, new HttpEntity<String>(headers), parser ->
+            moveToField(parser, "serverTime") ? parser.getValueAsLong() : null
+        );
     };
 
-    private final Supplier<Long> defaultCurrentTimeMillisRetriever = super::retrieveCurrentTime;
+    private static final int STAKING_POSITION_PAGE_SIZE = 100;
+
+    private static final int STAKING_POSITION_PARALLEL_PAGES = 4;
+
+    private final CachedSupplier<AccountSnapshot> accountSnapshotSupplier;
+
+    private final CachedSupplier<BalanceTable> stakingPositionsSupplier;
+
+    private BinancePriceStream priceStream;
 
-    private Supplier<Long> currentTimeMillisSupplier;
+    private BinanceUserDataStream userDataStream;
+
+    private final Map<String, StreamedBalance> streamedBalances;
+
+    private volatile long accountSnapshotTimeToLive;
+
+    private volatile long accountFullResyncInterval;
 
     public BinanceWallet(
         RestTemplate restTemplate,
@@ -63,7 +89,19 @@ public class BinanceWallet extends Wallet.Abst {
             })
         );
         this.name = "Binance wallet";
-        this.currentTimeMillisSupplier = defaultCurrentTimeMillisRetriever;
+        this.accountSnapshotTimeToLive = 5000L;
+        this.accountFullResyncInterval = 30L * 60L * 1000L;
+        this.streamedBalances = new ConcurrentHashMap<>();
+        this.accountSnapshotSupplier = new CachedSupplier<>(
+            requestCoalescer, "GET /api/v3/account", this::buildAccountSnapshot, this::buildAccountSnapshotAsync, accountSnapshotTimeToLive
+        );
+        this.stakingPositionsSupplier = new CachedSupplier<>(
+            requestCoalescer, "GET /sapi/v1/staking/position", this::loadStakingPositions, this::loadStakingPositionsAsync, 60000L
+        );
+        RateLimiter rateLimiter = httpTransport.getRateLimiter();
+        if (rateLimiter != null) {
+            registerRateLimits(rateLimiter);
+        }
     }
 
     public BinanceWallet(
@@ -100,31 +138,180 @@ public class BinanceWallet extends Wallet.Abst {
         this(null, null, apiKey, apiSecret, null, null);
     }
 
+    @Override
+    protected void setupRateLimiter(RateLimiter rateLimiter) {
+        registerRateLimits(rateLimiter);
+    }
+
+    private static void registerRateLimits(RateLimiter rateLimiter) {
+        rateLimiter.registerBucket("api.binance.com", "/api/", 6000, 60000)
+            .setUsedWeightHeader("X-MBX-USED-WEIGHT-1M")
+            .setWeight("/api/v3/account", 20)
+            .setWeight("/api/v3/ticker/price", 4)
+            .setWeight("/api/v3/userDataStream", 2);
+        rateLimiter.registerBucket("api.binance.com", "/sapi/", 12000, 60000)
+            .setUsedWeightHeader("X-SAPI-USED-IP-WEIGHT-1M");
+    }
+
+    @Override
+    public double getRateLimitUsage() {
+        return getRateLimitUsage("api.binance.com");
+    }
+
     public void enableCurrentTimeMillisFromBinanceServersRetriever() {
-        this.currentTimeMillisSupplier = currentTimeMillisFromBinanceServersRetriever;
+        enableClockSynchronizer(currentTimeMillisFromBinanceServersRetriever);
     }
 
     public void enableDefaultCurrentTimeMillisRetrieverRetriever() {
-        this.currentTimeMillisSupplier = defaultCurrentTimeMillisRetriever;
+        disableClockSynchronizer();
+    }
+
+    public synchronized void enablePriceStream() {
+        if (priceStream == null) {
+            priceStream = new BinancePriceStream().open();
+        }
+    }
+
+    public synchronized void disablePriceStream() {
+        BinancePriceStream priceStream = this.priceStream;
+        if (priceStream != null) {
+            this.priceStream = null;
+            priceStream.close();
+        }
+    }
+
+    public synchronized void enableUserDataStream() {
+        if (userDataStream == null) {
+            userDataStream = new BinanceUserDataStream(
+                BinanceUserDataStream.DEFAULT_URL,
+                this::createListenKeyAsync,
+                this::keepAliveListenKeyAsync,
+                this::updateBalance,
+                this::onUserDataStreamConnectionChanged
+            ).open();
+        }
+    }
+
+    public synchronized void disableUserDataStream() {
+        BinanceUserDataStream userDataStream = this.userDataStream;
+        if (userDataStream != null) {
+            this.userDataStream = null;
+            userDataStream.close();
+        }
+    }
+
+    public synchronized void setAccountSnapshotTimeToLive(long timeToLive) {
+        this.accountSnapshotTimeToLive = timeToLive;
+        if (userDataStream == null || !userDataStream.isConnected()) {
+            accountSnapshotSupplier.setTimeToLive(timeToLive);
+        }
+    }
+
+    public void setStakingPositionsTimeToLive(long timeToLive) {
+        stakingPositionsSupplier.setTimeToLive(timeToLive);
+    }
+
+    public synchronized void setAccountFullResyncInterval(long interval) {
+        this.accountFullResyncInterval = interval;
+        if (userDataStream != null && userDataStream.isConnected()) {
+            accountSnapshotSupplier.setTimeToLive(interval);
+        }
     }
 
     @Override
-    protected Collection<String> getAvailableCoinsWithEffectiveNames() {
-        Collection<Map<String, Object>> getAccountResponseBody = (Collection<Map<String, Object>>)getAccount().get("balances");
-        Iterator<Map<String, Object>> iterator = getAccountResponseBody.iterator();
-        Collection<String> coinNames = new TreeSet<>();
-        while (iterator.hasNext()) {
-            Map<String, Object> asset = iterator.next();
-            coinNames.add((String)asset.get("asset"));
+    public boolean setApiKey(String newValue) {
+        boolean changed = super.setApiKey(newValue);
+        if (changed) {
+            onCredentialsChanged();
         }
-        Collection<Map<String, Object>> getStakingPositionResponseBody = getStakingPosition();
-        iterator = getStakingPositionResponseBody.iterator();
-        while (iterator.hasNext()) {
-            Map<String, Object> asset = iterator.next();
-            coinNames.add((String)asset.get("asset"));
+        return changed;
+    }
+
+    @Override
+    public boolean setApiSecret(String newValue) {
+        boolean changed = super.setApiSecret(newValue);
+        if (changed) {
+            onCredentialsChanged();
+        }
+        return changed;
+    }
+
+    private synchronized void onCredentialsChanged() {
+        accountSnapshotSupplier.invalidate();
+        stakingPositionsSupplier.invalidate();
+        if (userDataStream != null) {
+            disableUserDataStream();
+            enableUserDataStream();
         }
+    }
+
+    private void onUserDataStreamConnectionChanged(Boolean connected) {
+        streamedBalances.clear();
+        if (connected) {
+            //Full resync after every (re)connection: events received from now on are applied on top of it
+            accountSnapshotSupplier.setTimeToLive(accountFullResyncInterval);
+        } else {
+            accountSnapshotSupplier.setTimeToLive(accountSnapshotTimeToLive);
+        }
+        accountSnapshotSupplier.invalidate();
+    }
+
+    private void updateBalance(String asset, double quantity, long eventTime) {
+        streamedBalances.put(asset, new StreamedBalance(quantity, eventTime));
+        AccountSnapshot accountSnapshot = accountSnapshotSupplier.getIfPresent();
+        if (accountSnapshot != null && eventTime >= accountSnapshot.updateTime) {
+            accountSnapshot.put(asset, quantity);
+        }
+    }
+
+    private AccountSnapshot buildAccountSnapshot() {
+        return applyStreamedBalances(getAccount());
+    }
+
+    private CompletableFuture<AccountSnapshot> buildAccountSnapshotAsync() {
+        return getAccountAsync().thenApply(this::applyStreamedBalances);
+    }
+
+    //The snapshot is not shared yet, so its balances are updated in place
+    private AccountSnapshot applyStreamedBalances(AccountSnapshot accountSnapshot) {
+        for (Map.Entry<String, StreamedBalance> streamedBalance : streamedBalances.entrySet()) {
+            if (streamedBalance.getValue().eventTime >= accountSnapshot.updateTime) {
+                accountSnapshot.balances.put(streamedBalance.getKey(), streamedBalance.getValue().quantity);
+            }
+        }
+        return accountSnapshot;
+    }
+
+    private CompletableFuture<String> createListenKeyAsync() {
+        UriComponents uriComponents = UriComponentsBuilder.newInstance().scheme("https").host("api.binance.com")
+                .pathSegment("api")
+                .pathSegment("v3")
+                .pathSegment("userDataStream").build();
+        HttpHeaders headers = new HttpHeaders();
+        headers.add("X-MBX-APIKEY", apiKey);
+        return readJsonAsync(uriComponents.toString(), HttpMethod.POST, new HttpEntity<String>(headers), parser ->
+            moveToField(parser, "listenKey") ? parser.getText() : null
+        );
+    }
+
+    private CompletableFuture<Object> keepAliveListenKeyAsync(String listenKey) {
+        UriComponents uriComponents = UriComponentsBuilder.newInstance().scheme("https").host("api.binance.com")
+                .pathSegment("api")
+                .pathSegment("v3")
+                .pathSegment("userDataStream")
+                .queryParam("listenKey", listenKey).build();
+        HttpHeaders headers = new HttpHeaders();
+        headers.add("X-MBX-APIKEY", apiKey);
+        return readJsonAsync(uriComponents.toString(), HttpMethod.PUT, new HttpEntity<String>(headers), parser -> null);
+    }
+
+    @Override
+    protected Collection<String> getAvailableCoinsWithEffectiveNames() {
+        Collection<String> coinNames = new TreeSet<>();
+        accountSnapshotSupplier.get().balances.forEach((asset, quantity, stake) -> coinNames.add(asset));
+        stakingPositionsSupplier.get().forEach((asset, quantity, stake) -> coinNames.add(asset));
         Collection<Map<String, Object>> getLendingDailyTokenPositionResponseBody = getLendingDailyTokenPosition();
-        iterator = getLendingDailyTokenPositionResponseBody.iterator();
+        Iterator<Map<String, Object>> iterator = getLendingDailyTokenPositionResponseBody.iterator();
         while (iterator.hasNext()) {
             Map<String, Object> asset = iterator.next();
             coinNames.add((String)asset.get("asset"));
@@ -134,28 +321,25 @@ public class BinanceWallet extends Wallet.Abst {
 
     @Override
     protected Collection<String> getOwnedCoinsWithEffectiveNames() {
-        Collection<Map<String, Object>> getAccountResponseBody = (Collection<Map<String, Object>>)getAccount().get("balances");
-        Iterator<Map<String, Object>> iterator = getAccountResponseBody.iterator();
+        return getOwnedCoinsWithEffectiveNames(accountSnapshotSupplier.get(), stakingPositionsSupplier.get());
+    }
+
+    @Override
+    protected CompletableFuture<Collection<String>> getOwnedCoinsWithEffectiveNamesAsync() {
+        return accountSnapshotSupplier.getAsync().thenCombine(stakingPositionsSupplier.getAsync(), this::getOwnedCoinsWithEffectiveNames);
+    }
+
+    private Collection<String> getOwnedCoinsWithEffectiveNames(AccountSnapshot accountSnapshot, BalanceTable stakingPositions) {
         Collection<String> coinNames = new TreeSet<>();
-        while (iterator.hasNext()) {
-            Map<String, Object> asset = iterator.next();
-            Double amount = Double.valueOf((String) asset.get("free"));
-            amount += Double.valueOf((String) asset.get("locked"));
-            if (amount > 0) {
-                coinNames.add((String)asset.get("asset"));
-            }
-        }
-        Collection<Map<String, Object>> getStakingPositionResponseBody = getStakingPosition();
-        iterator = getStakingPositionResponseBody.iterator();
-        while (iterator.hasNext()) {
-            Map<String, Object> asset = iterator.next();
-            Double amount = Double.valueOf((String)asset.get("amount"));
-            if (amount > 0) {
-                coinNames.add((String)asset.get("asset"));
+        BalanceTable.Visitor ownedCoinsCollector = (asset, quantity, stake) -> {
+            if (quantity > 0) {
+                coinNames.add(asset);
             }
-        }
+        };
+        accountSnapshot.balances.forEach(ownedCoinsCollector);
+        stakingPositions.forEach(ownedCoinsCollector);
         Collection<Map<String, Object>> getLendingDailyTokenPositionResponseBody = getLendingDailyTokenPosition();
-        iterator = getLendingDailyTokenPositionResponseBody.iterator();
+        Iterator<Map<String, Object>> iterator = getLendingDailyTokenPositionResponseBody.iterator();
         while (iterator.hasNext()) {
             Map<String, Object> asset = iterator.next();
             Double amount = Double.valueOf((String)asset.get("totalAmount"));
@@ -168,9 +352,10 @@ public class BinanceWallet extends Wallet.Abst {
 
     @Override
     protected Double getValueForCoin(String coinName, String collateral) {
-        Long currentTimeMillis = currentTimeMillis();
-        Map<String, String> queryParams = new HashMap<>();
-        queryParams.put("timestamp", String.valueOf(currentTimeMillis));
+        Double streamedPrice = getStreamedPrice(coinName + collateral);
+        if (streamedPrice != null) {
+            return streamedPrice;
+        }
         UriComponents uriComponents = UriComponentsBuilder.newInstance().scheme("https").host("api.binance.com")
                 .pathSegment("api")
                 .pathSegment("v3")
@@ -182,8 +367,138 @@ public class BinanceWallet extends Wallet.Abst {
                 ).build();
         HttpHeaders headers = new HttpHeaders();
         headers.add("X-MBX-APIKEY", apiKey);
-        Map<String, String> body = restTemplate.exchange(uriComponents.toString(), HttpMethod.GET, new HttpEntity<String>(headers), Map.class).getBody();
-        return Double.valueOf(body.get("price"));
+        return readJson(uriComponents.toString(), HttpMethod.GET, new HttpEntity<String>(headers), parser ->
+            moveToField(parser, "price") ? parser.getValueAsDouble() : null
+        );
+    }
+
+    @Override
+    protected BiFunction<String, String, Double> getValueRetrieverForCoins(Collection<String> coinNames) {
+        PriceTable prices = new PriceTable();
+        Collection<String> symbolsToBeRetrieved = addStreamedPrices(prices, coinNames);
+        if (!symbolsToBeRetrieved.isEmpty()) {
+            addPrices(prices, symbolsToBeRetrieved);
+        }
+        return (coinName, collateral) -> prices.get(coinName + collateral);
+    }
+
+    @Override
+    protected CompletableFuture<BiFunction<String, String, Double>> getValueRetrieverForCoinsAsync(Collection<String> coinNames) {
+        PriceTable prices = new PriceTable();
+        Collection<String> symbolsToBeRetrieved = addStreamedPrices(prices, coinNames);
+        CompletableFuture<Void> pricesRetriever = symbolsToBeRetrieved.isEmpty() ?
+            CompletableFuture.completedFuture(null) :
+            addPricesAsync(prices, symbolsToBeRetrieved);
+        return pricesRetriever.thenApply(ignored -> (coinName, collateral) -> prices.get(coinName + collateral));
+    }
+
+    //Returns the symbols whose price is not streamed
+    private Collection<String> addStreamedPrices(PriceTable prices, Collection<String> coinNames) {
+        Collection<String> symbolsToBeRetrieved = new ArrayList<>();
+        for (String symbol : getSymbolsForCoins(coinNames, String::concat)) {
+            Double streamedPrice = getStreamedPrice(symbol);
+            if (streamedPrice != null) {
+                prices.put(symbol, streamedPrice);
+            } else {
+                symbolsToBeRetrieved.add(symbol);
+            }
+        }
+        return symbolsToBeRetrieved;
+    }
+
+    private Double getStreamedPrice(String symbol) {
+        BinancePriceStream priceStream = this.priceStream;
+        return priceStream != null ? priceStream.getPrice(symbol) : null;
+    }
+
+    //Identical symbol sets requested concurrently, e.g. by a balance snapshot and a coin refresh, share one request
+    private void addPrices(PriceTable prices, Collection<String> symbols) {
+        Collection<String> sortedSymbols = new TreeSet<>(symbols);
+        try {
+            prices.putAll(requestCoalescer.execute(getPricesRequestKey(sortedSymbols), () -> retrievePrices(sortedSymbols)));
+        } catch (Throwable exc) {
+            if (!symbols.isEmpty() && checkExceptionForGetValueForCoin(exc)) {
+                //At least one of the requested symbols is not supported: retrieving all prices
+                //lets the missing ones be detected without failing the whole request
+                addPrices(prices, Collections.emptyList());
+                return;
+            }
+            throw exc;
+        }
+    }
+
+    private CompletableFuture<Void> addPricesAsync(PriceTable prices, Collection<String> symbols) {
+        Collection<String> sortedSymbols = new TreeSet<>(symbols);
+        return requestCoalescer.executeAsync(getPricesRequestKey(sortedSymbols), 0L, () -> retrievePricesAsync(sortedSymbols))
+            .handle((retrievedPrices, exc) -> {
+                if (exc == null) {
+                    prices.putAll(retrievedPrices);
+                    return CompletableFuture.<Void>completedFuture(null);
+                }
+                if (!symbols.isEmpty() && checkExceptionForGetValueForCoin(unwrap(exc))) {
+                    return addPricesAsync(prices, Collections.emptyList());
+                }
+                return Throwables.<CompletableFuture<Void>>sneakyThrow(unwrap(exc));
+            }).thenCompose(Function.identity());
+    }
+
+    private String getPricesRequestKey(Collection<String> sortedSymbols) {
+        return sortedSymbols.isEmpty() ?
+            "GET /api/v3/ticker/price" :
+            "GET /api/v3/ticker/price?symbols=" + String.join(",", sortedSymbols);
+    }
+
+    private PriceTable retrievePrices(Collection<String> symbols) {
+        PriceTable prices = new PriceTable(symbols.size());
+        return readJson(buildPricesUri(symbols), HttpMethod.GET, new HttpEntity<String>(buildApiKeyHeaders()), parser -> readPrices(parser, prices));
+    }
+
+    private CompletableFuture<PriceTable> retrievePricesAsync(Collection<String> symbols) {
+        PriceTable prices = new PriceTable(symbols.size());
+        return readJsonAsync(buildPricesUri(symbols), HttpMethod.GET, new HttpEntity<String>(buildApiKeyHeaders()), parser -> readPrices(parser, prices));
+    }
+
+    private URI buildPricesUri(Collection<String> symbols) {
+        UriComponentsBuilder uriComponentsBuilder = UriComponentsBuilder.newInstance().scheme("https").host("api.binance.com")
+                .pathSegment("api")
+                .pathSegment("v3")
+                .pathSegment("ticker")
+                .pathSegment("price");
+        if (!symbols.isEmpty()) {
+            uriComponentsBuilder = uriComponentsBuilder.queryParam(
+                "symbols",
+                symbols.stream().collect(Collectors.joining("\",\"", "[\"", "\"]"))
+            );
+        }
+        return uriComponentsBuilder.build().encode().toUri();
+    }
+
+    private static PriceTable readPrices(JsonParser parser, PriceTable prices) throws IOException {
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            String symbol = null;
+            double price = Double.NaN;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.getCurrentName();
+                parser.nextToken();
+                if ("symbol".equals(fieldName)) {
+                    symbol = parser.getText();
+                } else if ("price".equals(fieldName)) {
+                    price = parser.getValueAsDouble();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            if (symbol != null) {
+                prices.put(symbol, price);
+            }
+        }
+        return prices;
+    }
+
+    private HttpHeaders buildApiKeyHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add("X-MBX-APIKEY", apiKey);
+        return headers;
     }
 
     @Override
@@ -198,24 +513,20 @@ public class BinanceWallet extends Wallet.Abst {
 
     @Override
     protected Double getQuantityForEffectiveCoinName(String coinName) {
-        Collection<Map<String, Object>> balances = (Collection<Map<String, Object>>)getAccount().get("balances");
-        Iterator<Map<String, Object>> iterator = balances.iterator();
-        Double amount = 0D;
-        while (iterator.hasNext()) {
-            Map<String, Object> asset = iterator.next();
-            if (coinName.equals(asset.get("asset"))) {
-                amount += Double.valueOf((String) asset.get("free"));
-                amount += Double.valueOf((String) asset.get("locked"));
-            }
-        }
-        iterator = getStakingPosition(coinName).iterator();
-        while (iterator.hasNext()) {
-            Map<String, Object> asset = iterator.next();
-            if (coinName.equals(asset.get("asset"))) {
-                amount += Double.valueOf((String) asset.get("amount"));
-            }
-        }
-        iterator = getLendingDailyTokenPosition(coinName).iterator();
+        return getQuantityForEffectiveCoinName(coinName, accountSnapshotSupplier.get(), stakingPositionsSupplier.get());
+    }
+
+    @Override
+    protected CompletableFuture<Double> getQuantityForEffectiveCoinNameAsync(String coinName) {
+        return accountSnapshotSupplier.getAsync().thenCombine(
+            stakingPositionsSupplier.getAsync(),
+            (accountSnapshot, stakingPositions) -> getQuantityForEffectiveCoinName(coinName, accountSnapshot, stakingPositions)
+        );
+    }
+
+    private Double getQuantityForEffectiveCoinName(String coinName, AccountSnapshot accountSnapshot, BalanceTable stakingPositions) {
+        double amount = accountSnapshot.balances.getQuantity(coinName) + stakingPositions.getQuantity(coinName);
+        Iterator<Map<String, Object>> iterator = getLendingDailyTokenPosition(coinName).iterator();
         while (iterator.hasNext()) {
             Map<String, Object> asset = iterator.next();
             if (coinName.equals(asset.get("asset"))) {
@@ -226,68 +537,155 @@ public class BinanceWallet extends Wallet.Abst {
     }
 
     @Override
-    protected Long retrieveCurrentTime() {
-        return currentTimeMillisSupplier.get();
+    protected Map<String, Double> getQuantitiesForEffectiveCoinNames() {
+        return getQuantitiesForEffectiveCoinNames(accountSnapshotSupplier.get(), stakingPositionsSupplier.get());
+    }
+
+    @Override
+    protected CompletableFuture<Map<String, Double>> getQuantitiesForEffectiveCoinNamesAsync() {
+        return accountSnapshotSupplier.getAsync().thenCombine(stakingPositionsSupplier.getAsync(), this::getQuantitiesForEffectiveCoinNames);
+    }
+
+    private Map<String, Double> getQuantitiesForEffectiveCoinNames(AccountSnapshot accountSnapshot, BalanceTable stakingPositions) {
+        BalanceTable totals = new BalanceTable(accountSnapshot.balances);
+        stakingPositions.forEach((asset, quantity, stake) -> totals.add(asset, quantity));
+        for (Map<String, Object> asset : getLendingDailyTokenPosition()) {
+            totals.add((String)asset.get("asset"), Double.parseDouble((String)asset.get("totalAmount")));
+        }
+        Map<String, Double> quantities = new HashMap<>();
+        totals.forEach((asset, quantity, stake) -> {
+            if (quantity > 0) {
+                quantities.put(asset, quantity);
+            }
+        });
+        return quantities;
+    }
+
+    private AccountSnapshot getAccount() {
+        return readJson(buildAccountUrl(), HttpMethod.GET, new HttpEntity<String>(buildApiKeyHeaders()), AccountSnapshot::read);
     }
 
-    private Map<Object, Object> getAccount() {
+    private CompletableFuture<AccountSnapshot> getAccountAsync() {
+        return readJsonAsync(buildAccountUrl(), HttpMethod.GET, new HttpEntity<String>(buildApiKeyHeaders()), AccountSnapshot::read);
+    }
+
+    private String buildAccountUrl() {
         Long currentTimeMillis = currentTimeMillis();
         Map<String, String> queryParams = new HashMap<>();
         queryParams.put("timestamp", String.valueOf(currentTimeMillis));
-        String signature = Signer.accept(joinQueryParameters(queryParams), apiSecret);
+        String signature = sign(joinQueryParameters(queryParams));
         UriComponents uriComponents = UriComponentsBuilder.newInstance().scheme("https").host("api.binance.com")
                 .pathSegment("api")
                 .pathSegment("v3")
                 .pathSegment("account")
                 .queryParam("timestamp", String.valueOf(currentTimeMillis))
                 .queryParam("signature", signature).build();
-        HttpHeaders headers = new HttpHeaders();
-        headers.add("X-MBX-APIKEY", apiKey);
-        ResponseEntity<Map> response = restTemplate.exchange(uriComponents.toString(), HttpMethod.GET, new HttpEntity<String>(headers), Map.class);
-        return response.getBody();
-    }
-
-    private Collection<Map<String, Object>> getStakingPosition() {
-        return getStakingPosition(null);
-    }
-
-    private Collection<Map<String, Object>> getStakingPosition(String coinName) {
-        Collection<Map<String, Object>> responseBodies = new ArrayList<>();
-        Collection<Map<String, Object>> responseBody = null;
-        Long pageIndex = 1L;
-        Long pageSize = 100L;
-        while (responseBody == null || (!responseBody.isEmpty() && responseBody.size() == pageSize)) {
-            Long currentTimeMillis = currentTimeMillis();
-            Map<String, String> queryParams = new HashMap<>();
-            queryParams = new HashMap<>();
-            queryParams.put("product", "STAKING");
-            if (coinName != null) {
-                queryParams.put("asset", coinName);
+        return uriComponents.toString();
+    }
+
+    private BalanceTable loadStakingPositions() {
+        BalanceTable stakingPositions = new BalanceTable();
+        boolean lastPageFull = addStakingPositionPage(stakingPositions, 1L) == STAKING_POSITION_PAGE_SIZE;
+        long nextPageIndex = 2L;
+        int batchSize = 1;
+        //Only when the first page is full the following ones are retrieved, in parallel batches that double
+        //while the pages keep coming back full, so that the requests past the last page are few
+        while (lastPageFull) {
+            List<Supplier<Integer>> pageRetrievers = new ArrayList<>();
+            for (int i = 0; i < batchSize; i++) {
+                long pageIndex = nextPageIndex++;
+                pageRetrievers.add(() -> addStakingPositionPage(stakingPositions, pageIndex));
             }
-            queryParams.put("current", String.valueOf(pageIndex));
-            queryParams.put("size", String.valueOf(pageSize));
-            queryParams.put("timestamp", String.valueOf(currentTimeMillis));
-            String signature = Signer.accept(joinQueryParameters(queryParams), apiSecret);
-            UriComponentsBuilder uriComponentsBuilder = UriComponentsBuilder.newInstance().scheme("https").host("api.binance.com")
-                    .pathSegment("sapi")
-                    .pathSegment("v1")
-                    .pathSegment("staking")
-                    .pathSegment("position")
-                    .queryParam("product", "STAKING")
-                    .queryParam("current", pageIndex++)
-                    .queryParam("size", pageSize);
-            if (coinName != null) {
-                uriComponentsBuilder = uriComponentsBuilder.queryParam("asset", coinName);
+            for (Integer retrievedPageSize : runInParallel(pageRetrievers)) {
+                lastPageFull = retrievedPageSize == STAKING_POSITION_PAGE_SIZE;
+                if (!lastPageFull) {
+                    break;
+                }
             }
-            UriComponents uriComponents = uriComponentsBuilder
-                    .queryParam("timestamp", String.valueOf(currentTimeMillis))
-                    .queryParam("signature", signature).build();
-            HttpHeaders headers = new HttpHeaders();
-            headers.add("X-MBX-APIKEY", apiKey);
-            responseBody = restTemplate.exchange(uriComponents.toString(), HttpMethod.GET, new HttpEntity<String>(headers), Collection.class).getBody();
-            responseBodies.addAll(responseBody);
+            batchSize = Math.min(batchSize * 2, STAKING_POSITION_PARALLEL_PAGES);
+        }
+        return stakingPositions;
+    }
+
+    private CompletableFuture<BalanceTable> loadStakingPositionsAsync() {
+        BalanceTable stakingPositions = new BalanceTable();
+        return addStakingPositionPageAsync(stakingPositions, 1L).thenCompose(pageSize ->
+            pageSize == STAKING_POSITION_PAGE_SIZE ?
+                addStakingPositionPagesAsync(stakingPositions, 2L, 1) :
+                CompletableFuture.completedFuture(null)
+        ).thenApply(ignored -> stakingPositions);
+    }
+
+    private CompletableFuture<Void> addStakingPositionPagesAsync(BalanceTable stakingPositions, long firstPageIndex, int batchSize) {
+        List<CompletableFuture<Integer>> pageRetrievers = new ArrayList<>();
+        for (int i = 0; i < batchSize; i++) {
+            pageRetrievers.add(addStakingPositionPageAsync(stakingPositions, firstPageIndex + i));
         }
-        return responseBodies;
+        return CompletableFuture.allOf(pageRetrievers.toArray(new CompletableFuture[pageRetrievers.size()])).thenCompose(ignored ->
+            pageRetrievers.stream().allMatch(pageRetriever -> pageRetriever.join() == STAKING_POSITION_PAGE_SIZE) ?
+                addStakingPositionPagesAsync(stakingPositions, firstPageIndex + batchSize, Math.min(batchSize * 2, STAKING_POSITION_PARALLEL_PAGES)) :
+                CompletableFuture.completedFuture(null)
+        );
+    }
+
+    private int addStakingPositionPage(BalanceTable stakingPositions, long pageIndex) {
+        return readJson(buildStakingPositionPageUrl(pageIndex), HttpMethod.GET, new HttpEntity<String>(buildApiKeyHeaders()), parser ->
+            readStakingPositionPage(parser, stakingPositions)
+        );
+    }
+
+    private CompletableFuture<Integer> addStakingPositionPageAsync(BalanceTable stakingPositions, long pageIndex) {
+        return readJsonAsync(buildStakingPositionPageUrl(pageIndex), HttpMethod.GET, new HttpEntity<String>(buildApiKeyHeaders()), parser ->
+            readStakingPositionPage(parser, stakingPositions)
+        );
+    }
+
+    private String buildStakingPositionPageUrl(long pageIndex) {
+        Long currentTimeMillis = currentTimeMillis();
+        Map<String, String> queryParams = new LinkedHashMap<>();
+        queryParams.put("product", "STAKING");
+        queryParams.put("current", String.valueOf(pageIndex));
+        queryParams.put("size", String.valueOf(STAKING_POSITION_PAGE_SIZE));
+        queryParams.put("timestamp", String.valueOf(currentTimeMillis));
+        String signature = sign(joinQueryParameters(queryParams));
+        UriComponents uriComponents = UriComponentsBuilder.newInstance().scheme("https").host("api.binance.com")
+                .pathSegment("sapi")
+                .pathSegment("v1")
+                .pathSegment("staking")
+                .pathSegment("position")
+                .queryParam("product", "STAKING")
+                .queryParam("current", pageIndex)
+                .queryParam("size", STAKING_POSITION_PAGE_SIZE)
+                .queryParam("timestamp", String.valueOf(currentTimeMillis))
+                .queryParam("signature", signature).build();
+        return uriComponents.toString();
+    }
+
+    //The pages are read in parallel into the same table
+    private static int readStakingPositionPage(JsonParser parser, BalanceTable stakingPositions) throws IOException {
+        int pageSize = 0;
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            pageSize++;
+            String asset = null;
+            double amount = 0D;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.getCurrentName();
+                parser.nextToken();
+                if ("asset".equals(fieldName)) {
+                    asset = parser.getText();
+                } else if ("amount".equals(fieldName)) {
+                    amount = parser.getValueAsDouble();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            if (asset != null && amount != 0D) {
+                synchronized (stakingPositions) {
+                    stakingPositions.add(asset, amount);
+                }
+            }
+        }
+        return pageSize;
     }
 
     private Collection<Map<String, Object>> getLendingDailyTokenPosition() {
@@ -301,7 +699,7 @@ public class BinanceWallet extends Wallet.Abst {
             queryParams.put("asset", coinName);
         }
         queryParams.put("timestamp", String.valueOf(currentTimeMillis));
-        String signature = Signer.accept(joinQueryParameters(queryParams), apiSecret);
+        String signature = sign(joinQueryParameters(queryParams));
         UriComponentsBuilder uriComponentsBuilder =  UriComponentsBuilder.newInstance().scheme("https").host("api.binance.com")
                 .pathSegment("sapi")
                 .pathSegment("v1")
@@ -323,20 +721,67 @@ public class BinanceWallet extends Wallet.Abst {
                 .getBody();*/
     }
 
-    private static class Signer {
-        final static String HMAC_SHA256 = "HmacSHA256";
+    private static class AccountSnapshot {
+        //Replaced on every streamed update once the snapshot is shared, so that the readers never see it change
+        private volatile BalanceTable balances;
+        private long updateTime;
 
-        private static String accept(String data, String secret) {
-            byte[] hmacSha256 = null;
-            try {
-                SecretKeySpec secretKeySpec = new SecretKeySpec(secret.getBytes(), HMAC_SHA256);
-                Mac mac = Mac.getInstance(HMAC_SHA256);
-                mac.init(secretKeySpec);
-                hmacSha256 = mac.doFinal(data.getBytes());
-            } catch (Exception e) {
-                throw new RuntimeException("Failed to calculate hmac-sha256", e);
+        private AccountSnapshot() {
+            balances = new BalanceTable();
+        }
+
+        private synchronized void put(String asset, double quantity) {
+            BalanceTable balances = new BalanceTable(this.balances);
+            balances.put(asset, quantity);
+            this.balances = balances;
+        }
+
+        private static AccountSnapshot read(JsonParser parser) throws IOException {
+            AccountSnapshot accountSnapshot = new AccountSnapshot();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                if ("updateTime".equals(fieldName)) {
+                    accountSnapshot.updateTime = parser.getValueAsLong();
+                } else if ("balances".equals(fieldName) && token == JsonToken.START_ARRAY) {
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        accountSnapshot.readBalance(parser);
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            return accountSnapshot;
+        }
+
+        private void readBalance(JsonParser parser) throws IOException {
+            String asset = null;
+            double amount = 0D;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.getCurrentName();
+                parser.nextToken();
+                if ("asset".equals(fieldName)) {
+                    asset = parser.getText();
+                } else if ("free".equals(fieldName) || "locked".equals(fieldName)) {
+                    amount += parser.getValueAsDouble();
+                } else {
+                    parser.skipChildren();
+                }
             }
-            return Hex.encode(hmacSha256, true);
+            if (asset != null) {
+                balances.add(asset, amount);
+            }
+        }
+
+    }
+
+    private static class StreamedBalance {
+        private final double quantity;
+        private final long eventTime;
+
+        private StreamedBalance(double quantity, long eventTime) {
+            this.quantity = quantity;
+            this.eventTime = eventTime;
         }
 
     }
@@ -0,0 +1,108 @@
+package org.rg.finance;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import org.rg.util.LoggerChain;
+
+public class ClockSynchronizer {
+	private static final int MAX_SAMPLES = 8;
+
+	private final Supplier<Long> serverTimeRetriever;
+	private final Supplier<? extends Executor> executorSupplier;
+	private final Deque<Sample> samples;
+	private final AtomicBoolean sampling;
+	private volatile long samplingInterval;
+	private volatile long offset;
+	private volatile long lastSampleTime;
+
+	public ClockSynchronizer(Supplier<Long> serverTimeRetriever, Supplier<? extends Executor> executorSupplier) {
+		this.serverTimeRetriever = serverTimeRetriever;
+		this.executorSupplier = executorSupplier;
+		this.samples = new ArrayDeque<>();
+		this.sampling = new AtomicBoolean();
+		this.samplingInterval = 60000L;
+	}
+
+	public long currentTimeMillis() {
+		long now = System.currentTimeMillis();
+		if (lastSampleTime == 0L) {
+			//No estimation available yet: the first sample is taken synchronously
+			synchronized (this) {
+				if (lastSampleTime == 0L) {
+					sample();
+				}
+			}
+		} else if (now - lastSampleTime > samplingInterval && sampling.compareAndSet(false, true)) {
+			try {
+				executorSupplier.get().execute(this::sampleAndRelease);
+			} catch (Throwable exc) {
+				sampling.set(false);
+				throw exc;
+			}
+		}
+		return System.currentTimeMillis() + offset;
+	}
+
+	public long getOffset() {
+		return offset;
+	}
+
+	public ClockSynchronizer setSamplingInterval(long samplingInterval) {
+		this.samplingInterval = samplingInterval;
+		return this;
+	}
+
+	private void sampleAndRelease() {
+		try {
+			sample();
+		} catch (Throwable exc) {
+			LoggerChain.getInstance().logDebug("Unable to sample server time: " + exc.getMessage());
+		} finally {
+			sampling.set(false);
+		}
+	}
+
+	private void sample() {
+		long requestTime = System.currentTimeMillis();
+		long serverTime = serverTimeRetriever.get();
+		long responseTime = System.currentTimeMillis();
+		long roundTripTime = responseTime - requestTime;
+		//The server is assumed to have read its clock halfway through the round trip
+		Sample sample = new Sample(serverTime - (requestTime + (roundTripTime / 2)), roundTripTime);
+		synchronized (samples) {
+			samples.addLast(sample);
+			if (samples.size() > MAX_SAMPLES) {
+				samples.removeFirst();
+			}
+			offset = estimateOffset();
+		}
+		lastSampleTime = responseTime;
+	}
+
+	private long estimateOffset() {
+		List<Sample> bestSamples = new ArrayList<>(samples);
+		bestSamples.sort(Comparator.comparingLong(sample -> sample.roundTripTime));
+		//Samples with the highest round trip times are the least reliable ones: only the fastest half is kept
+		bestSamples = bestSamples.subList(0, (bestSamples.size() + 1) / 2);
+		bestSamples.sort(Comparator.comparingLong(sample -> sample.offset));
+		return bestSamples.get(bestSamples.size() / 2).offset;
+	}
+
+	private static class Sample {
+		private final long offset;
+		private final long roundTripTime;
+
+		private Sample(long offset, long roundTripTime) {
+			this.offset = offset;
+			this.roundTripTime = roundTripTime;
+		}
+	}
+
+}
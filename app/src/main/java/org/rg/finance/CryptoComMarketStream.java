@@ -0,0 +1,123 @@
+package org.rg.finance;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+public class CryptoComMarketStream extends CryptoComStream {
+	public static final String DEFAULT_URL = "wss://stream.crypto.com/v2/market";
+	private static final int MAX_CHANNELS_PER_REQUEST = 50;
+
+	private final Set<String> instrumentNames;
+	private final Map<String, Ticker> tickers;
+
+	public CryptoComMarketStream() {
+		this(DEFAULT_URL);
+	}
+
+	public CryptoComMarketStream(String url) {
+		super("Crypto.com market stream", url);
+		this.instrumentNames = ConcurrentHashMap.newKeySet();
+		this.tickers = new ConcurrentHashMap<>();
+	}
+
+	public void subscribeTicker(String instrumentName) {
+		if (instrumentNames.add(instrumentName) && isConnected()) {
+			subscribe(Collections.singletonList("ticker." + instrumentName));
+		}
+	}
+
+	public Double getPrice(String instrumentName, CryptoComWallet.PriceType priceType) {
+		if (!isAlive()) {
+			return null;
+		}
+		Ticker ticker = tickers.get(instrumentName);
+		return ticker != null ? ticker.getPrice(priceType) : null;
+	}
+
+	@Override
+	public void close() {
+		super.close();
+		tickers.clear();
+	}
+
+	@Override
+	protected void onReady() {
+		Collection<String> channels = new ArrayList<>();
+		for (String instrumentName : instrumentNames) {
+			channels.add("ticker." + instrumentName);
+			if (channels.size() == MAX_CHANNELS_PER_REQUEST) {
+				subscribe(channels);
+				channels.clear();
+			}
+		}
+		if (!channels.isEmpty()) {
+			subscribe(channels);
+		}
+	}
+
+	@Override
+	protected void onDisconnected() {
+		tickers.clear();
+	}
+
+	@Override
+	protected void onData(String channel, JsonParser parser) throws IOException {
+		if (!"ticker".equals(channel)) {
+			parser.skipChildren();
+			return;
+		}
+		String instrumentName = null;
+		double last = Double.NaN;
+		double bid = Double.NaN;
+		double ask = Double.NaN;
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String fieldName = parser.getCurrentName();
+			JsonToken token = parser.nextToken();
+			if (token == JsonToken.VALUE_NULL) {
+				continue;
+			}
+			if ("i".equals(fieldName)) {
+				instrumentName = parser.getText();
+			} else if ("a".equals(fieldName)) {
+				last = parser.getValueAsDouble();
+			} else if ("b".equals(fieldName)) {
+				bid = parser.getValueAsDouble();
+			} else if ("k".equals(fieldName)) {
+				ask = parser.getValueAsDouble();
+			} else {
+				parser.skipChildren();
+			}
+		}
+		if (instrumentName != null) {
+			tickers.put(instrumentName, new Ticker(last, bid, ask));
+		}
+	}
+
+	private static class Ticker {
+		private final double last;
+		private final double bid;
+		private final double ask;
+
+		private Ticker(double last, double bid, double ask) {
+			this.last = last;
+			this.bid = bid;
+			this.ask = ask;
+		}
+
+		private Double getPrice(CryptoComWallet.PriceType priceType) {
+			double price = priceType == CryptoComWallet.PriceType.BID ? bid :
+				priceType == CryptoComWallet.PriceType.ASK ? ask : last;
+			return Double.isNaN(price) ? null : price;
+		}
+
+	}
+
+}
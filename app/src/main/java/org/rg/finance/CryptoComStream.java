@@ -0,0 +1,188 @@
+package org.rg.finance;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.rg.util.LoggerChain;
+import org.rg.util.Throwables;
+import org.rg.util.WebSocketSession;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public abstract class CryptoComStream {
+	private static final ObjectMapper objectMapper = new ObjectMapper();
+	//Requests sent in the first second after the connection is established are counted against the rate limit
+	private static final long REQUEST_DELAY = 1000L;
+
+	private final WebSocketSession session;
+	private final AtomicLong requestIds;
+	private final Map<String, Long> sequences;
+	private volatile long maxDataAge;
+
+	protected CryptoComStream(String name, String url) {
+		this.requestIds = new AtomicLong(System.currentTimeMillis());
+		this.maxDataAge = 60000L;
+		this.sequences = new ConcurrentHashMap<>();
+		this.session = new WebSocketSession(name, url)
+			.whenOpened(this::scheduleOnReady)
+			.whenAMessageIsReceived(this::process)
+			.whenDisconnected(this::disconnected)
+			.reconnectIfSilentFor(45000L);
+	}
+
+	public CryptoComStream open() {
+		session.open();
+		return this;
+	}
+
+	public void close() {
+		session.close();
+	}
+
+	public boolean isConnected() {
+		return session.isConnected();
+	}
+
+	public boolean isAlive() {
+		return session.isConnected() && System.currentTimeMillis() - session.getLastMessageTime() < maxDataAge;
+	}
+
+	public void setMaxDataAge(long maxDataAge) {
+		this.maxDataAge = maxDataAge;
+	}
+
+	protected abstract void onReady();
+
+	protected void onDisconnected() {}
+
+	protected void onResponse(String method, int code) {}
+
+	protected void onSequenceGap(String channel) {}
+
+	protected abstract void onData(String channel, JsonParser parser) throws IOException;
+
+	protected long nextRequestId() {
+		return requestIds.incrementAndGet();
+	}
+
+	//The sequences restart with the connection, so the first update of each channel is never a gap
+	protected void checkSequence(String channel, long previousSequence, long sequence) {
+		Long lastSequence = sequences.put(channel, sequence);
+		if (lastSequence != null && previousSequence != lastSequence) {
+			LoggerChain.getInstance().logInfo(
+				session.getName() + ": missed the updates of " + channel + " between " + lastSequence + " and " + previousSequence
+			);
+			onSequenceGap(channel);
+		}
+	}
+
+	protected boolean send(String message) {
+		return session.send(message);
+	}
+
+	protected boolean subscribe(Collection<String> channels) {
+		StringBuilder request = new StringBuilder("{\"id\":").append(nextRequestId())
+			.append(",\"method\":\"subscribe\",\"params\":{\"channels\":[");
+		boolean first = true;
+		for (String channel : channels) {
+			if (!first) {
+				request.append(',');
+			}
+			request.append('"').append(channel).append('"');
+			first = false;
+		}
+		return send(request.append("]},\"nonce\":").append(System.currentTimeMillis()).append('}').toString());
+	}
+
+	private void scheduleOnReady(WebSocketSession session) {
+		WebSocketSession.getScheduler().schedule(() -> {
+			if (session.isConnected()) {
+				onReady();
+			}
+		}, REQUEST_DELAY, TimeUnit.MILLISECONDS);
+	}
+
+	private void disconnected() {
+		sequences.clear();
+		onDisconnected();
+	}
+
+	private void process(String message) {
+		try (JsonParser parser = objectMapper.getFactory().createParser(message)) {
+			if (parser.nextToken() != JsonToken.START_OBJECT) {
+				return;
+			}
+			long id = 0L;
+			String method = null;
+			int code = 0;
+			boolean hasResult = false;
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				String fieldName = parser.getCurrentName();
+				JsonToken token = parser.nextToken();
+				if ("id".equals(fieldName)) {
+					id = parser.getValueAsLong();
+				} else if ("method".equals(fieldName)) {
+					method = parser.getText();
+				} else if ("code".equals(fieldName)) {
+					code = parser.getValueAsInt();
+				} else if ("result".equals(fieldName) && token == JsonToken.START_OBJECT) {
+					hasResult = true;
+					processResult(parser);
+				} else {
+					parser.skipChildren();
+				}
+			}
+			if ("public/heartbeat".equals(method)) {
+				send("{\"id\":" + id + ",\"method\":\"public/respond-heartbeat\"}");
+			} else if (!hasResult && method != null) {
+				if (code != 0) {
+					LoggerChain.getInstance().logError(session.getName() + ": request " + method + " failed with code " + code);
+				}
+				onResponse(method, code);
+			}
+		} catch (IOException exc) {
+			Throwables.sneakyThrow(exc);
+		}
+	}
+
+	private void processResult(JsonParser parser) throws IOException {
+		String channel = null;
+		JsonNode bufferedData = null;
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String fieldName = parser.getCurrentName();
+			JsonToken token = parser.nextToken();
+			if ("channel".equals(fieldName)) {
+				channel = parser.getText();
+			} else if ("data".equals(fieldName) && token == JsonToken.START_ARRAY) {
+				if (channel != null) {
+					processData(channel, parser);
+				} else {
+					//The fields of the result are not ordered: the data is kept until the channel is known
+					bufferedData = parser.readValueAsTree();
+				}
+			} else {
+				parser.skipChildren();
+			}
+		}
+		if (bufferedData != null && channel != null) {
+			try (JsonParser dataParser = bufferedData.traverse(parser.getCodec())) {
+				dataParser.nextToken();
+				processData(channel, dataParser);
+			}
+		}
+	}
+
+	private void processData(String channel, JsonParser parser) throws IOException {
+		while (parser.nextToken() == JsonToken.START_OBJECT) {
+			onData(channel, parser);
+		}
+	}
+
+}
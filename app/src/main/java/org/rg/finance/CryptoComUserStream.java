@@ -0,0 +1,124 @@
+package org.rg.finance;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.rg.util.LoggerChain;
+import org.rg.util.Throwables;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class CryptoComUserStream extends CryptoComStream {
+	public static final String DEFAULT_URL = "wss://stream.crypto.com/v2/user";
+	private static final ObjectMapper objectMapper = new ObjectMapper().setSerializationInclusion(JsonInclude.Include.NON_NULL);
+
+	private final Function<Long, CryptoComWallet.ApiRequest> authRequestBuilder;
+	private final BalanceListener balanceListener;
+	private final Consumer<Boolean> connectionListener;
+	private volatile boolean authenticated;
+
+	public CryptoComUserStream(
+		String url,
+		Function<Long, CryptoComWallet.ApiRequest> authRequestBuilder,
+		BalanceListener balanceListener,
+		Consumer<Boolean> connectionListener
+	) {
+		super("Crypto.com user stream", url);
+		this.authRequestBuilder = authRequestBuilder;
+		this.balanceListener = balanceListener;
+		this.connectionListener = connectionListener;
+	}
+
+	public boolean isAuthenticated() {
+		return authenticated && isConnected();
+	}
+
+	@Override
+	protected void onReady() {
+		try {
+			send(objectMapper.writeValueAsString(authRequestBuilder.apply(nextRequestId())));
+		} catch (JsonProcessingException exc) {
+			Throwables.sneakyThrow(exc);
+		}
+	}
+
+	@Override
+	protected void onResponse(String method, int code) {
+		if (!"public/auth".equals(method)) {
+			return;
+		}
+		if (code == 0) {
+			authenticated = true;
+			subscribe(Collections.singletonList("user.balance"));
+			connectionListener.accept(true);
+		} else {
+			LoggerChain.getInstance().logError("Crypto.com user stream authentication failed");
+		}
+	}
+
+	@Override
+	protected void onDisconnected() {
+		if (authenticated) {
+			authenticated = false;
+			connectionListener.accept(false);
+		}
+	}
+
+	//The wallet resyncs the balances through the REST api on every authentication, a gap is handled the same way
+	@Override
+	protected void onSequenceGap(String channel) {
+		if (isAuthenticated()) {
+			connectionListener.accept(true);
+		}
+	}
+
+	@Override
+	protected void onData(String channel, JsonParser parser) throws IOException {
+		if (!"user.balance".equals(channel)) {
+			parser.skipChildren();
+			return;
+		}
+		String currency = null;
+		double balance = 0D;
+		double stake = 0D;
+		long sequence = -1L;
+		long previousSequence = -1L;
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String fieldName = parser.getCurrentName();
+			parser.nextToken();
+			if ("currency".equals(fieldName)) {
+				currency = parser.getText();
+			} else if ("balance".equals(fieldName)) {
+				balance = parser.getValueAsDouble();
+			} else if ("stake".equals(fieldName)) {
+				stake = parser.getValueAsDouble();
+			} else if ("u".equals(fieldName)) {
+				sequence = parser.getValueAsLong();
+			} else if ("pu".equals(fieldName)) {
+				previousSequence = parser.getValueAsLong();
+			} else {
+				parser.skipChildren();
+			}
+		}
+		if (sequence != -1L && previousSequence != -1L) {
+			checkSequence(channel, previousSequence, sequence);
+		}
+		if (currency != null) {
+			balanceListener.accept(currency, balance, stake);
+		}
+	}
+
+	@FunctionalInterface
+	public static interface BalanceListener {
+
+		public void accept(String currency, double balance, double stake);
+
+	}
+
+}
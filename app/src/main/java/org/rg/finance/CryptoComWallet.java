@@ -1,41 +1,84 @@
 package org.rg.finance;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.math.BigDecimal;
-import java.nio.charset.StandardCharsets;
-import java.security.InvalidKeyException;
-import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.NoSuchElementException;
 import java.util.Optional;
-import java.util.TreeMap;
+import java.util.SortedMap;
 import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
+import java.util.function.BiFunction;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
-
-import org.rg.util.Hex;
-import org.rg.util.Throwables;
+import org.rg.util.CachedSupplier;
+import org.rg.util.HttpTransport;
+import org.rg.util.RateLimiter;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
-import org.springframework.http.ResponseEntity;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponents;
 import org.springframework.web.util.UriComponentsBuilder;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 
 
 @SuppressWarnings({ "rawtypes", "unchecked", "unused"})
 public class CryptoComWallet extends Wallet.Abst {
+	private static final Map<String, Object> ACCOUNT_SUMMARY_PARAMS = Collections.emptyMap();
+	private static final UriComponents ACCOUNT_SUMMARY_URI = UriComponentsBuilder.newInstance().scheme("https").host("api.crypto.com")
+			.pathSegment("v2").pathSegment("private").pathSegment("get-account-summary").build();
+
+	private static final UriComponents SERVER_TIME_URI = UriComponentsBuilder.newInstance().scheme("https").host("api.crypto.com")
+			.pathSegment("v2").pathSegment("public").pathSegment("get-book")
+			.queryParam("instrument_name", "CRO_USDT").queryParam("depth", 1)
+			.build();
+
+	//The public API has no time endpoint and the time of the book is the one of its last change: the Date header
+	//is read instead. It is truncated to the second, so the middle of that second is taken. The call is not
+	//coalesced, since a shared response would be timed against the round trip of another request
+	private final Supplier<Long> currentTimeMillisFromCryptoComServersRetriever = () ->
+		httpTransport.execute(SERVER_TIME_URI.toUri(), HttpMethod.GET, new HttpHeaders(), null, new HttpTransport.ResponseReader<Long>() {
+
+			@Override
+			public Long read(InputStream body) {
+				throw new UnsupportedOperationException("The server time is read from the response headers");
+			}
+
+			@Override
+			public Long read(InputStream body, Function<String, String> headerValueSupplier) {
+				String date = headerValueSupplier.apply("Date");
+				if (date == null) {
+					throw new IllegalStateException("Unable to retrieve the current time from Crypto.com servers");
+				}
+				return ZonedDateTime.parse(date, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli() + 500L;
+			}
+
+		});
+
+	private final CachedSupplier<Tickers> tickersSupplier;
+	private final CachedSupplier<AccountSummary> accountSummarySupplier;
+	private volatile PriceType priceType;
+	private CryptoComMarketStream marketStream;
+	private CryptoComUserStream userStream;
+	private final Map<String, StreamedBalance> streamedBalances;
+	private volatile long accountSummaryTimeToLive;
+	private volatile long accountFullResyncInterval;
 
 	public CryptoComWallet(
 			RestTemplate restTemplate,
@@ -60,7 +103,19 @@ public class CryptoComWallet extends Wallet.Abst {
 					return valueMap;
 				}));
 		this.name = "Crypto.com wallet";
+		this.tickersSupplier = new CachedSupplier<>(requestCoalescer, "GET /v2/public/get-ticker", this::getTickers, this::getTickersAsync, 5000L);
+		this.accountSummaryTimeToLive = 5000L;
+		this.accountFullResyncInterval = 30L * 60L * 1000L;
+		this.streamedBalances = new ConcurrentHashMap<>();
+		this.accountSummarySupplier = new CachedSupplier<>(
+			requestCoalescer, "POST /v2/private/get-account-summary", this::buildAccountSummary, this::buildAccountSummaryAsync, accountSummaryTimeToLive
+		);
+		this.priceType = PriceType.LAST;
 		this.timeOffset = -1000L;
+		RateLimiter rateLimiter = httpTransport.getRateLimiter();
+		if (rateLimiter != null) {
+			registerRateLimits(rateLimiter);
+		}
 	}
 
 	public CryptoComWallet(
@@ -97,17 +152,193 @@ public class CryptoComWallet extends Wallet.Abst {
 		this(null, null, apiKey, apiSecret, null, null);
 	}
 
+	@Override
+	protected void setupRateLimiter(RateLimiter rateLimiter) {
+		registerRateLimits(rateLimiter);
+	}
+
+	private static void registerRateLimits(RateLimiter rateLimiter) {
+		rateLimiter.registerBucket("api.crypto.com", "/v2/private/", 30, 1000);
+		rateLimiter.registerBucket("api.crypto.com", "/v2/public/", 100, 1000);
+	}
+
+	@Override
+	public double getRateLimitUsage() {
+		return getRateLimitUsage("api.crypto.com");
+	}
+
+	public void setPriceType(PriceType priceType) {
+		this.priceType = priceType;
+	}
+
+	public void setTickersTimeToLive(long timeToLive) {
+		tickersSupplier.setTimeToLive(timeToLive);
+	}
+
+	public synchronized void setAccountSummaryTimeToLive(long timeToLive) {
+		this.accountSummaryTimeToLive = timeToLive;
+		if (userStream == null || !userStream.isAuthenticated()) {
+			accountSummarySupplier.setTimeToLive(timeToLive);
+		}
+	}
+
+	public synchronized void setAccountFullResyncInterval(long interval) {
+		this.accountFullResyncInterval = interval;
+		if (userStream != null && userStream.isAuthenticated()) {
+			accountSummarySupplier.setTimeToLive(interval);
+		}
+	}
+
+	public synchronized void enablePriceStream() {
+		if (marketStream == null) {
+			marketStream = new CryptoComMarketStream();
+			marketStream.open();
+		}
+	}
+
+	public synchronized void disablePriceStream() {
+		CryptoComMarketStream marketStream = this.marketStream;
+		if (marketStream != null) {
+			this.marketStream = null;
+			marketStream.close();
+		}
+	}
+
+	public synchronized void enableUserDataStream() {
+		if (userStream == null) {
+			userStream = new CryptoComUserStream(
+				CryptoComUserStream.DEFAULT_URL,
+				this::buildAuthRequest,
+				this::updateBalance,
+				this::onUserStreamConnectionChanged
+			);
+			userStream.open();
+		}
+	}
+
+	public synchronized void disableUserDataStream() {
+		CryptoComUserStream userStream = this.userStream;
+		if (userStream != null) {
+			this.userStream = null;
+			userStream.close();
+		}
+	}
+
+	@Override
+	public boolean setApiKey(String newValue) {
+		boolean changed = super.setApiKey(newValue);
+		if (changed) {
+			onCredentialsChanged();
+		}
+		return changed;
+	}
+
+	@Override
+	public boolean setApiSecret(String newValue) {
+		boolean changed = super.setApiSecret(newValue);
+		if (changed) {
+			onCredentialsChanged();
+		}
+		return changed;
+	}
+
+	private synchronized void onCredentialsChanged() {
+		accountSummarySupplier.invalidate();
+		if (userStream != null) {
+			disableUserDataStream();
+			enableUserDataStream();
+		}
+	}
+
+	private ApiRequest buildAuthRequest(Long id) {
+		Long currentTimeMillis = currentTimeMillis();
+		ApiRequest apiRequestJson = new ApiRequest();
+		apiRequestJson.setId(id);
+		apiRequestJson.setApiKey(apiKey);
+		apiRequestJson.setMethod("public/auth");
+		apiRequestJson.setNonce(currentTimeMillis);
+		apiRequestJson.setSig(sign(payload -> Signer.writePayload(payload, apiRequestJson, false)));
+		return apiRequestJson;
+	}
+
+	private void onUserStreamConnectionChanged(Boolean connected) {
+		streamedBalances.clear();
+		if (connected) {
+			//Full resync after every (re)authentication: updates received from now on are applied on top of it
+			accountSummarySupplier.setTimeToLive(accountFullResyncInterval);
+		} else {
+			accountSummarySupplier.setTimeToLive(accountSummaryTimeToLive);
+		}
+		accountSummarySupplier.invalidate();
+	}
+
+	private void updateBalance(String currency, double balance, double stake) {
+		long receiveTime = System.currentTimeMillis();
+		streamedBalances.put(currency, new StreamedBalance(balance, stake, receiveTime));
+		AccountSummary accountSummary = accountSummarySupplier.getIfPresent();
+		if (accountSummary != null && receiveTime >= accountSummary.requestTime) {
+			accountSummary.put(currency, balance, stake);
+		}
+	}
+
+	private AccountSummary buildAccountSummary() {
+		long requestTime = System.currentTimeMillis();
+		return applyStreamedBalances(getAccountSummary(), requestTime);
+	}
+
+	private CompletableFuture<AccountSummary> buildAccountSummaryAsync() {
+		long requestTime = System.currentTimeMillis();
+		return getAccountSummaryAsync().thenApply(accountSummary -> applyStreamedBalances(accountSummary, requestTime));
+	}
+
+	//The summary is not shared yet, so its balances are updated in place
+	private AccountSummary applyStreamedBalances(AccountSummary accountSummary, long requestTime) {
+		accountSummary.requestTime = requestTime;
+		for (Map.Entry<String, StreamedBalance> streamedBalance : streamedBalances.entrySet()) {
+			if (streamedBalance.getValue().receiveTime >= requestTime) {
+				accountSummary.balances.put(streamedBalance.getKey(), streamedBalance.getValue().balance, streamedBalance.getValue().stake);
+			}
+		}
+		return accountSummary;
+	}
+
+	public Double getTickerPrice(String instrumentName, PriceType priceType) {
+		return getTickerPrice(instrumentName, priceType, tickersSupplier);
+	}
+
+	private Double getTickerPrice(String instrumentName, PriceType priceType, Supplier<Tickers> tickersSupplier) {
+		CryptoComMarketStream marketStream = this.marketStream;
+		if (marketStream != null) {
+			Double price = marketStream.getPrice(instrumentName, priceType);
+			if (price != null) {
+				return price;
+			}
+		}
+		Tickers tickers = tickersSupplier.get();
+		Double price = tickers != null ? tickers.getPrices(priceType).get(instrumentName) : null;
+		if (price != null && marketStream != null) {
+			//Only instruments known to exist are subscribed
+			marketStream.subscribeTicker(instrumentName);
+		}
+		return price;
+	}
+
+	public void enableCurrentTimeMillisFromCryptoComServersRetriever() {
+		enableClockSynchronizer(currentTimeMillisFromCryptoComServersRetriever);
+	}
+
+	public void enableDefaultCurrentTimeMillisRetriever() {
+		disableClockSynchronizer();
+	}
+
 	@Override
 	protected Collection<String> getAvailableCoinsWithEffectiveNames() {
-		Collection<Map<Object, Object>> coinBalances = ((Collection<Map<Object, Object>>)((Map<Object, Object>)getAccountSummary()
-				.get("result")).get("accounts"));
 		Collection<String> coinNames = new TreeSet<>();
-		for (Map<Object, Object> coinBalance : coinBalances) {
-			String coinName = (String)coinBalance.get("currency");
+		accountSummarySupplier.get().balances.forEach((coinName, balance, stake) -> {
 			if (isCronosCoin(coinName)) {
 				coinNames.add("CRO");
 			}
-		}
+		});
 		return coinNames;
 	}
 
@@ -117,48 +348,94 @@ public class CryptoComWallet extends Wallet.Abst {
 
 	@Override
 	protected Collection<String> getOwnedCoinsWithEffectiveNames() {
-		Collection<Map<Object, Object>> coinBalances = ((Collection<Map<Object, Object>>)((Map<Object, Object>)getAccountSummary()
-				.get("result")).get("accounts"));
+		return getOwnedCoinsWithEffectiveNames(accountSummarySupplier.get());
+	}
+
+	@Override
+	protected CompletableFuture<Collection<String>> getOwnedCoinsWithEffectiveNamesAsync() {
+		return accountSummarySupplier.getAsync().thenApply(this::getOwnedCoinsWithEffectiveNames);
+	}
+
+	private Collection<String> getOwnedCoinsWithEffectiveNames(AccountSummary accountSummary) {
 		Collection<String> coinNames = new TreeSet<>();
-		for (Map<Object, Object> coinBalance : coinBalances) {
-			Number spotQuantity = (Number)coinBalance.get("balance");
-			Number stakeQuantity = (Number)coinBalance.get("stake");
-			if (spotQuantity.doubleValue() + stakeQuantity.doubleValue() > 0) {
-				String coinName = (String)coinBalance.get("currency");
+		accountSummary.balances.forEach((coinName, balance, stake) -> {
+			if (balance + stake > 0) {
 				if (!isCronosCoin(coinName)) {
 					coinNames.add(coinName);
 				} else {
 					coinNames.add("CRO");
 				}
 			}
-		}
+		});
 		return coinNames;
 	}
 
 	@Override
 	protected Double getValueForCoin(String coinName, String collateral) {
-		Long currentTimeMillis = currentTimeMillis();
-		UriComponents uriComponents = UriComponentsBuilder.newInstance().scheme("https").host("api.crypto.com")
-				.pathSegment("v2").pathSegment("public").pathSegment("get-trades").queryParam("instrument_name", coinName + "_" + getCollateralForCoin(coinName))
-				.build();
-		Map<String, Object> params = new HashMap<>();
-		params.put("currency", coinName);
-		ApiRequest apiRequestJson = new ApiRequest();
-		apiRequestJson.setId(currentTimeMillis);
-		apiRequestJson.setApiKey(apiKey);
-		apiRequestJson.setMethod(uriComponents.getPathSegments().get(1) + "/" + uriComponents.getPathSegments().get(2));
-		apiRequestJson.setNonce(currentTimeMillis);
-		apiRequestJson.setParams(params);
-		ResponseEntity<Map> response = restTemplate.exchange(
-				uriComponents.toString(), HttpMethod.GET,
-				new HttpEntity<ApiRequest>(apiRequestJson, new HttpHeaders()), Map.class);
-		Map<Object, Object> responseBody = response.getBody();
-		if (((Integer)responseBody.get("code")) != 0)  {
+		return getValueForCoin(coinName, tickersSupplier);
+	}
+
+	private Double getValueForCoin(String coinName, Supplier<Tickers> tickersSupplier) {
+		Double value = getTickerPrice(getInstrumentName(coinName), priceType, tickersSupplier);
+		if (value == null)  {
 			throw new NoSuchElementException("No value found for coin" + coinName);
 		}
-		Number value = Double.valueOf((String)((Collection<Map<Object, Object>>) ((Map<Object, Object>) responseBody
-				.get("result")).get("data")).iterator().next().get("p"));
-		return value.doubleValue();
+		return value;
+	}
+
+	//The instrument is quoted in the collateral of the effective coin name, e.g. LUNA2_USDC for LUNA
+	private String getInstrumentName(String coinName) {
+		return coinName + "_" + getCollateralForCoin(coinName);
+	}
+
+	//The tickers are not retrieved when the market stream provides all the prices
+	@Override
+	protected CompletableFuture<BiFunction<String, String, Double>> getValueRetrieverForCoinsAsync(Collection<String> coinNames) {
+		CryptoComMarketStream marketStream = this.marketStream;
+		PriceType priceType = this.priceType;
+		boolean allPricesStreamed = marketStream != null && getSymbolsForCoins(coinNames, (coinAlias, collateral) -> getInstrumentName(coinAlias))
+			.stream().allMatch(instrumentName -> marketStream.getPrice(instrumentName, priceType) != null);
+		CompletableFuture<Tickers> tickersRetriever = allPricesStreamed ?
+			CompletableFuture.completedFuture(null) :
+			tickersSupplier.getAsync();
+		return tickersRetriever.thenApply(tickers -> {
+			Supplier<Tickers> retrievedTickersSupplier = tickers != null ? () -> tickers : tickersSupplier::getIfPresent;
+			return (coinName, collateral) -> getValueForCoin(coinName, retrievedTickersSupplier);
+		});
+	}
+
+	@Override
+	protected Map<String, Double> getQuantitiesForEffectiveCoinNames() {
+		return getQuantitiesForEffectiveCoinNames(accountSummarySupplier.get());
+	}
+
+	@Override
+	protected CompletableFuture<Map<String, Double>> getQuantitiesForEffectiveCoinNamesAsync() {
+		return accountSummarySupplier.getAsync().thenApply(this::getQuantitiesForEffectiveCoinNames);
+	}
+
+	private Map<String, Double> getQuantitiesForEffectiveCoinNames(AccountSummary accountSummary) {
+		Map<String, Double> quantities = new HashMap<>();
+		accountSummary.balances.forEach((coinName, balance, stake) -> {
+			if (balance + stake > 0) {
+				quantities.merge(isCronosCoin(coinName) ? "CRO" : coinName, balance, Double::sum);
+			}
+		});
+		return quantities;
+	}
+
+	private Tickers getTickers() {
+		return readJson(buildTickersUrl(), HttpMethod.GET, new HttpEntity<String>(new HttpHeaders()), Tickers::read);
+	}
+
+	private CompletableFuture<Tickers> getTickersAsync() {
+		return readJsonAsync(buildTickersUrl(), HttpMethod.GET, new HttpEntity<String>(new HttpHeaders()), Tickers::read);
+	}
+
+	private String buildTickersUrl() {
+		return UriComponentsBuilder.newInstance().scheme("https").host("api.crypto.com")
+				.pathSegment("v2").pathSegment("public").pathSegment("get-ticker")
+				.build().toString();
 	}
 
 	@Override
@@ -168,139 +445,265 @@ public class CryptoComWallet extends Wallet.Abst {
 
 	@Override
 	protected Double getQuantityForEffectiveCoinName(String coinName) {
-		Function<String, Double> coinQuantitySupplier = cName -> {
-			Map<Object, Object> responseBody = getAccountSummary(cName);
-			Collection<Map<Object, Object>> accounts = (Collection<Map<Object, Object>>)
-					((Map<Object, Object>)responseBody.get("result")).get("accounts");
-			Number value = (Number)accounts.stream().findFirst().map(accountsMap -> accountsMap.get("balance")).orElseGet(() -> 0D);
-			return value.doubleValue();
-		};
+		return getQuantityForEffectiveCoinName(coinName, accountSummarySupplier.get());
+	}
+
+	@Override
+	protected CompletableFuture<Double> getQuantityForEffectiveCoinNameAsync(String coinName) {
+		return accountSummarySupplier.getAsync().thenApply(accountSummary -> getQuantityForEffectiveCoinName(coinName, accountSummary));
+	}
+
+	private Double getQuantityForEffectiveCoinName(String coinName, AccountSummary accountSummary) {
 		if ("CRO".equals(coinName)) {
-			return coinQuantitySupplier.andThen(
-					quantity -> quantity.doubleValue() + coinQuantitySupplier.apply("CRO-STAKE")
-			).andThen(quantity -> quantity.doubleValue() + coinQuantitySupplier.apply("CRO-SUPERCHARGER")).apply(coinName);
+			return accountSummary.getBalance(coinName) +
+				accountSummary.getBalance("CRO-STAKE") +
+				accountSummary.getBalance("CRO-SUPERCHARGER");
 		}
-		return coinQuantitySupplier.apply(coinName);
+		return accountSummary.getBalance(coinName);
 	}
 
-	private Map<Object, Object> getAccountSummary() {
-		return getAccountSummary(null);
+	private AccountSummary getAccountSummary() {
+		return readJson(
+				ACCOUNT_SUMMARY_URI.toString(), HttpMethod.POST,
+				new HttpEntity<ApiRequest>(buildAccountSummaryRequest(), new HttpHeaders()), AccountSummary::read);
 	}
 
-	private Map<Object, Object> getAccountSummary(String coinName) {
+	private CompletableFuture<AccountSummary> getAccountSummaryAsync() {
+		return readJsonAsync(
+				ACCOUNT_SUMMARY_URI.toString(), HttpMethod.POST,
+				new HttpEntity<ApiRequest>(buildAccountSummaryRequest(), new HttpHeaders()), AccountSummary::read);
+	}
+
+	private ApiRequest buildAccountSummaryRequest() {
 		Long currentTimeMillis = currentTimeMillis();
-		UriComponents uriComponents = UriComponentsBuilder.newInstance().scheme("https").host("api.crypto.com")
-				.pathSegment("v2").pathSegment("private").pathSegment("get-account-summary").build();
-		Map<String, Object> params = new HashMap<>();
-		//Il filtraggio ora avviene nella Patch più sotto nel codice
-        /*if (coinName != null) {
-        	params.put("currency", coinName);
-        }*/
 		ApiRequest apiRequestJson = new ApiRequest();
 		apiRequestJson.setId(currentTimeMillis);
 		apiRequestJson.setApiKey(apiKey);
-		apiRequestJson.setMethod(uriComponents.getPathSegments().get(1) + "/" + uriComponents.getPathSegments().get(2));
+		apiRequestJson.setMethod(ACCOUNT_SUMMARY_URI.getPathSegments().get(1) + "/" + ACCOUNT_SUMMARY_URI.getPathSegments().get(2));
 		apiRequestJson.setNonce(currentTimeMillis);
-		apiRequestJson.setParams(params);
-		try {
-			Signer.sign(apiRequestJson, apiSecret);
-		} catch (Throwable exc) {
-			Throwables.sneakyThrow(exc);
-		}
-		Map<Object, Object> responseBody = restTemplate.exchange(
-				uriComponents.toString(), HttpMethod.POST,
-				new HttpEntity<ApiRequest>(apiRequestJson, new HttpHeaders()), Map.class).getBody();
-		//Patch per bug nuova API
-		if (coinName != null) {
-			Collection<Map<Object, Object>> coinBalances = ((Collection<Map<Object, Object>>)((Map<Object, Object>)responseBody
-					.get("result")).get("accounts"));
-			Iterator<Map<Object, Object>> coinBalancesIterator = coinBalances.iterator();
-			while(coinBalancesIterator.hasNext()) {
-				Map<Object, Object> coinInfo = coinBalancesIterator.next();
-				if (!(coinName.equals(coinInfo.get("currency")))) {
-					coinBalancesIterator.remove();
+		apiRequestJson.setParams(ACCOUNT_SUMMARY_PARAMS);
+		apiRequestJson.setSig(sign(payload -> Signer.writePayload(payload, apiRequestJson, true)));
+		return apiRequestJson;
+	}
+
+	private static class AccountSummary {
+		//Replaced on every streamed update once the summary is shared, so that the readers never see it change
+		private volatile BalanceTable balances;
+		private long requestTime;
+
+		private AccountSummary() {
+			balances = new BalanceTable();
+		}
+
+		private synchronized void put(String currency, double balance, double stake) {
+			BalanceTable balances = new BalanceTable(this.balances);
+			balances.put(currency, balance, stake);
+			this.balances = balances;
+		}
+
+		private double getBalance(String currency) {
+			return balances.getQuantity(currency);
+		}
+
+		private static AccountSummary read(JsonParser parser) throws IOException {
+			AccountSummary accountSummary = new AccountSummary();
+			if (moveToField(parser, "result") && parser.currentToken() == JsonToken.START_OBJECT &&
+				moveToField(parser, "accounts") && parser.currentToken() == JsonToken.START_ARRAY) {
+				while (parser.nextToken() == JsonToken.START_OBJECT) {
+					accountSummary.readAccount(parser);
+				}
+			}
+			return accountSummary;
+		}
+
+		private void readAccount(JsonParser parser) throws IOException {
+			String currency = null;
+			double balance = 0D;
+			double stake = 0D;
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				String fieldName = parser.getCurrentName();
+				parser.nextToken();
+				if ("currency".equals(fieldName)) {
+					currency = parser.getText();
+				} else if ("balance".equals(fieldName)) {
+					balance = parser.getValueAsDouble();
+				} else if ("stake".equals(fieldName)) {
+					stake = parser.getValueAsDouble();
+				} else {
+					parser.skipChildren();
 				}
 			}
+			if (currency != null) {
+				balances.put(currency, balance, stake);
+			}
 		}
-		return responseBody;
 
+	}
 
+	public static enum PriceType {
+		LAST, BID, ASK
 	}
 
-	private static class Signer {
-		private static final String HMAC_SHA256 = "HmacSHA256";
-		private static final int MAX_LEVEL = 3;
+	private static class Tickers {
+		private final PriceTable[] prices;
 
-		static boolean verify(ApiRequest apiRequestJson, String secret) {
-			try {
-				return genSignature(apiRequestJson, secret).equalsIgnoreCase(apiRequestJson.getSig());
-			} catch (Exception e) {
-				return false;
+		private Tickers(int expectedSize) {
+			prices = new PriceTable[PriceType.values().length];
+			for (int i = 0; i < prices.length; i++) {
+				prices[i] = new PriceTable(expectedSize);
 			}
 		}
 
+		private PriceTable getPrices(PriceType priceType) {
+			return prices[priceType.ordinal()];
+		}
 
-		private static String getParamString(final Object paramObject) {
-			StringBuilder sb = new StringBuilder();
-			appendParamString(sb, paramObject, 0);
-			return sb.toString();
+		private static Tickers read(JsonParser parser) throws IOException {
+			Tickers tickers = new Tickers(512);
+			if (moveToField(parser, "result") && parser.currentToken() == JsonToken.START_OBJECT &&
+				moveToField(parser, "data") && parser.currentToken() == JsonToken.START_ARRAY) {
+				while (parser.nextToken() == JsonToken.START_OBJECT) {
+					tickers.readTicker(parser);
+				}
+			}
+			return tickers;
 		}
 
-		private static void appendParamString(final StringBuilder paramsStringBuilder, final Object paramObject,
-											  final int level) {
-			if (level >= MAX_LEVEL) {
-				paramsStringBuilder.append(paramObject.toString());
+		private void readTicker(JsonParser parser) throws IOException {
+			String instrumentName = null;
+			double last = Double.NaN;
+			double bid = Double.NaN;
+			double ask = Double.NaN;
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				String fieldName = parser.getCurrentName();
+				JsonToken token = parser.nextToken();
+				if (token == JsonToken.VALUE_NULL) {
+					continue;
+				}
+				if ("i".equals(fieldName)) {
+					instrumentName = parser.getText();
+				} else if ("a".equals(fieldName)) {
+					last = parser.getValueAsDouble();
+				} else if ("b".equals(fieldName)) {
+					bid = parser.getValueAsDouble();
+				} else if ("k".equals(fieldName)) {
+					ask = parser.getValueAsDouble();
+				} else {
+					parser.skipChildren();
+				}
+			}
+			if (instrumentName == null) {
 				return;
 			}
+			put(PriceType.LAST, instrumentName, last);
+			put(PriceType.BID, instrumentName, bid);
+			put(PriceType.ASK, instrumentName, ask);
+		}
+
+		private void put(PriceType priceType, String instrumentName, double price) {
+			if (!Double.isNaN(price)) {
+				prices[priceType.ordinal()].put(instrumentName, price);
+			}
+		}
+
+	}
+
+	private static class StreamedBalance {
+		private final double balance;
+		private final double stake;
+		private final long receiveTime;
+
+		private StreamedBalance(double balance, double stake, long receiveTime) {
+			this.balance = balance;
+			this.stake = stake;
+			this.receiveTime = receiveTime;
+		}
+	}
+
+	static class Signer {
+		private static final int MAX_LEVEL = 3;
+		//Keys must be immutable maps
+		private static final Map<Map<String, Object>, byte[]> staticParamsEncodings = new ConcurrentHashMap<>();
+
+		static void writePayload(HmacSigner.Payload payload, ApiRequest apiRequestJson, boolean staticParams) {
+			payload.append(String.valueOf(apiRequestJson.getMethod()));
+			appendValue(payload, apiRequestJson.getId());
+			payload.append(String.valueOf(apiRequestJson.getApiKey()));
+			Map<String, Object> params = apiRequestJson.getParams();
+			if (params != null) {
+				if (staticParams) {
+					payload.append(staticParamsEncodings.computeIfAbsent(params, Signer::encodeParams));
+				} else {
+					appendParams(payload, params, 0);
+				}
+			}
+			if (apiRequestJson.getNonce() != null) {
+				payload.append(apiRequestJson.getNonce());
+			}
+		}
 
+		private static byte[] encodeParams(Map<String, Object> params) {
+			HmacSigner.Payload payload = new HmacSigner.Payload();
+			appendParams(payload, params, 0);
+			return payload.toByteArray();
+		}
+
+		private static void appendParams(HmacSigner.Payload payload, Object paramObject, int level) {
+			if (level >= MAX_LEVEL) {
+				appendValue(payload, paramObject);
+				return;
+			}
 			if (paramObject instanceof Map) {
-				TreeMap<String, Object> params = new TreeMap<>((Map) paramObject);
-				for (Map.Entry<String, Object> entry : params.entrySet()) {
-					if (entry.getValue() instanceof Double) {
-						paramsStringBuilder.append(entry.getKey())
-								.append((new BigDecimal(entry.getValue().toString())).stripTrailingZeros().toPlainString());
-					} else if ((entry.getValue() instanceof List) || (entry.getValue() instanceof Map)) {
-						paramsStringBuilder.append(entry.getKey());
-						appendParamString(paramsStringBuilder, entry.getValue(), level + 1);
+				Map<String, Object> params = (Map<String, Object>)paramObject;
+				for (String key : getSortedKeys(params)) {
+					Object value = params.get(key);
+					payload.append(key);
+					if (value instanceof Double) {
+						appendDouble(payload, (Double)value);
+					} else if ((value instanceof List) || (value instanceof Map)) {
+						appendParams(payload, value, level + 1);
 					} else {
-						paramsStringBuilder.append(entry.getKey()).append(entry.getValue());
+						appendValue(payload, value);
 					}
 				}
 			} else if (paramObject instanceof List) {
-				List list = (List) paramObject;
-				for (Object o : list) {
-					appendParamString(paramsStringBuilder, o, level + 1);
+				for (Object value : (List)paramObject) {
+					appendParams(payload, value, level + 1);
 				}
 			} else {
-				paramsStringBuilder.append(paramObject.toString());
+				appendValue(payload, paramObject);
 			}
 		}
 
-		private static String genSignature(ApiRequest apiRequestJson, String secret)
-				throws NoSuchAlgorithmException, InvalidKeyException {
-			final byte[] byteKey = secret.getBytes(StandardCharsets.UTF_8);
-			Mac mac = Mac.getInstance(HMAC_SHA256);
-			SecretKeySpec keySpec = new SecretKeySpec(byteKey, HMAC_SHA256);
-			mac.init(keySpec);
-
-			String paramsString = "";
-
-			if (apiRequestJson.getParams() != null) {
-				paramsString += getParamString(apiRequestJson.getParams());
+		private static Iterable<String> getSortedKeys(Map<String, Object> params) {
+			if (params instanceof SortedMap && ((SortedMap)params).comparator() == null) {
+				return params.keySet();
 			}
+			String[] keys = params.keySet().toArray(new String[params.size()]);
+			Arrays.sort(keys);
+			return Arrays.asList(keys);
+		}
 
-			String sigPayload = apiRequestJson.getMethod() + apiRequestJson.getId() + apiRequestJson.getApiKey()
-					+ paramsString + (apiRequestJson.getNonce() == null ? "" : apiRequestJson.getNonce());
-
-			byte[] macData = mac.doFinal(sigPayload.getBytes(StandardCharsets.UTF_8));
-
-			return Hex.encode(macData, true);
+		private static void appendValue(HmacSigner.Payload payload, Object value) {
+			if (value instanceof Long || value instanceof Integer) {
+				payload.append(((Number)value).longValue());
+			} else {
+				payload.append(String.valueOf(value));
+			}
 		}
 
-		private static ApiRequest sign(ApiRequest apiRequestJson, String secret)
-				throws InvalidKeyException, NoSuchAlgorithmException {
-			apiRequestJson.setSig(genSignature(apiRequestJson, secret));
-			return apiRequestJson;
+		//Same output of BigDecimal.stripTrailingZeros().toPlainString(): Double.toString never produces
+		//trailing zeros except for the ".0" of integral values, so BigDecimal is needed only for the
+		//zero and the scientific notation
+		private static void appendDouble(HmacSigner.Payload payload, Double value) {
+			String valueAsString = value.toString();
+			if (value == 0D || valueAsString.indexOf('E') >= 0) {
+				payload.append(new BigDecimal(valueAsString).stripTrailingZeros().toPlainString());
+			} else if (valueAsString.endsWith(".0")) {
+				payload.append(valueAsString.substring(0, valueAsString.length() - 2));
+			} else {
+				payload.append(valueAsString);
+			}
 		}
 	}
 
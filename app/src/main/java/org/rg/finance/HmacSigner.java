@@ -0,0 +1,159 @@
+package org.rg.finance;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.rg.util.Hex;
+
+public class HmacSigner {
+	private static final String HMAC_SHA256 = "HmacSHA256";
+
+	private final ThreadLocal<Context> contexts;
+
+	public HmacSigner(String secret) {
+		Key key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), HMAC_SHA256);
+		contexts = ThreadLocal.withInitial(() -> new Context(key));
+	}
+
+	public String sign(CharSequence data) {
+		Context context = contexts.get();
+		context.payload.reset().append(data);
+		return context.sign();
+	}
+
+	public String sign(PayloadWriter payloadWriter) {
+		Context context = contexts.get();
+		payloadWriter.write(context.payload.reset());
+		return context.sign();
+	}
+
+	@FunctionalInterface
+	public static interface PayloadWriter {
+
+		public void write(Payload payload);
+
+	}
+
+	public static class Payload {
+		private byte[] buffer;
+		private int length;
+
+		Payload() {
+			buffer = new byte[512];
+		}
+
+		private Payload reset() {
+			length = 0;
+			return this;
+		}
+
+		public Payload append(byte[] data) {
+			ensureCapacity(length + data.length);
+			System.arraycopy(data, 0, buffer, length, data.length);
+			length += data.length;
+			return this;
+		}
+
+		public Payload append(long value) {
+			if (value == Long.MIN_VALUE) {
+				return append(String.valueOf(value));
+			}
+			ensureCapacity(length + 20);
+			if (value < 0) {
+				buffer[length++] = '-';
+				value = -value;
+			}
+			int start = length;
+			do {
+				buffer[length++] = (byte)('0' + (value % 10));
+				value /= 10;
+			} while (value > 0);
+			for (int i = start, j = length - 1; i < j; i++, j--) {
+				byte digit = buffer[i];
+				buffer[i] = buffer[j];
+				buffer[j] = digit;
+			}
+			return this;
+		}
+
+		//UTF-8 encoding in the reusable buffer: lone surrogates are replaced by '?' as String.getBytes does
+		public Payload append(CharSequence data) {
+			int dataLength = data.length();
+			ensureCapacity(length + (dataLength * 3));
+			for (int i = 0; i < dataLength; i++) {
+				char character = data.charAt(i);
+				if (character < 0x80) {
+					buffer[length++] = (byte)character;
+				} else if (character < 0x800) {
+					buffer[length++] = (byte)(0xC0 | (character >> 6));
+					buffer[length++] = (byte)(0x80 | (character & 0x3F));
+				} else if (Character.isSurrogate(character)) {
+					if (Character.isHighSurrogate(character) && i + 1 < dataLength && Character.isLowSurrogate(data.charAt(i + 1))) {
+						int codePoint = Character.toCodePoint(character, data.charAt(++i));
+						buffer[length++] = (byte)(0xF0 | (codePoint >> 18));
+						buffer[length++] = (byte)(0x80 | ((codePoint >> 12) & 0x3F));
+						buffer[length++] = (byte)(0x80 | ((codePoint >> 6) & 0x3F));
+						buffer[length++] = (byte)(0x80 | (codePoint & 0x3F));
+					} else {
+						buffer[length++] = '?';
+					}
+				} else {
+					buffer[length++] = (byte)(0xE0 | (character >> 12));
+					buffer[length++] = (byte)(0x80 | ((character >> 6) & 0x3F));
+					buffer[length++] = (byte)(0x80 | (character & 0x3F));
+				}
+			}
+			return this;
+		}
+
+		byte[] toByteArray() {
+			byte[] data = new byte[length];
+			System.arraycopy(buffer, 0, data, 0, length);
+			return data;
+		}
+
+		private void ensureCapacity(int capacity) {
+			if (buffer.length < capacity) {
+				byte[] newBuffer = new byte[Math.max(capacity, buffer.length << 1)];
+				System.arraycopy(buffer, 0, newBuffer, 0, length);
+				buffer = newBuffer;
+			}
+		}
+	}
+
+	private static class Context {
+		private final Mac mac;
+		private final byte[] digest;
+		private final char[] hexDigest;
+		private final Payload payload;
+
+		private Context(Key key) {
+			try {
+				mac = Mac.getInstance(HMAC_SHA256);
+				mac.init(key);
+			} catch (GeneralSecurityException exc) {
+				throw new RuntimeException("Failed to initialize hmac-sha256", exc);
+			}
+			digest = new byte[mac.getMacLength()];
+			hexDigest = new char[digest.length << 1];
+			payload = new Payload();
+		}
+
+		private String sign() {
+			try {
+				mac.update(payload.buffer, 0, payload.length);
+				mac.doFinal(digest, 0);
+			} catch (GeneralSecurityException exc) {
+				mac.reset();
+				throw new RuntimeException("Failed to calculate hmac-sha256", exc);
+			}
+			Hex.encode(digest, 0, digest.length, true, hexDigest, 0);
+			return new String(hexDigest);
+		}
+	}
+
+}
@@ -0,0 +1,73 @@
+package org.rg.finance;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class PriceGraph {
+	private final Map<String, Map<String, Double>> rates;
+
+	public PriceGraph() {
+		this.rates = new HashMap<>();
+	}
+
+	public void putRate(String base, String quote, double rate) {
+		rates.computeIfAbsent(base, key -> new HashMap<>()).put(quote, rate);
+		if (rate != 0D && !Double.isNaN(rate)) {
+			rates.computeIfAbsent(quote, key -> new HashMap<>()).putIfAbsent(base, 1D / rate);
+		}
+	}
+
+	public boolean contains(String base, String quote) {
+		Map<String, Double> quotes = rates.get(base);
+		return quotes != null && quotes.containsKey(quote);
+	}
+
+	//Breadth first search: the path with the fewest conversions is the one that pays the fewest spreads
+	public List<String> findPath(String from, String to) {
+		if (from.equals(to)) {
+			return Collections.singletonList(from);
+		}
+		Map<String, String> previousNodes = new HashMap<>();
+		Deque<String> nodesToBeVisited = new ArrayDeque<>();
+		previousNodes.put(from, from);
+		nodesToBeVisited.add(from);
+		while (!nodesToBeVisited.isEmpty()) {
+			String node = nodesToBeVisited.poll();
+			for (String adjacentNode : rates.getOrDefault(node, Collections.emptyMap()).keySet()) {
+				if (previousNodes.putIfAbsent(adjacentNode, node) != null) {
+					continue;
+				}
+				if (adjacentNode.equals(to)) {
+					List<String> path = new ArrayList<>();
+					for (String pathNode = to; !pathNode.equals(from); pathNode = previousNodes.get(pathNode)) {
+						path.add(pathNode);
+					}
+					path.add(from);
+					Collections.reverse(path);
+					return path;
+				}
+				nodesToBeVisited.add(adjacentNode);
+			}
+		}
+		return null;
+	}
+
+	public Double getRate(List<String> path) {
+		double rate = 1D;
+		for (int i = 1; i < path.size(); i++) {
+			Map<String, Double> quotes = rates.get(path.get(i - 1));
+			Double edgeRate = quotes != null ? quotes.get(path.get(i)) : null;
+			if (edgeRate == null) {
+				return null;
+			}
+			rate *= edgeRate;
+		}
+		return rate;
+	}
+
+}
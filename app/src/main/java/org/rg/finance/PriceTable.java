@@ -0,0 +1,83 @@
+package org.rg.finance;
+
+public class PriceTable {
+	private String[] symbols;
+	private double[] prices;
+	private int size;
+
+	public PriceTable() {
+		this(16);
+	}
+
+	public PriceTable(int expectedSize) {
+		int capacity = 16;
+		while (capacity < expectedSize * 2) {
+			capacity <<= 1;
+		}
+		this.symbols = new String[capacity];
+		this.prices = new double[capacity];
+	}
+
+	public void put(String symbol, double price) {
+		int index = indexOf(symbols, symbol);
+		if (symbols[index] == null) {
+			symbols[index] = symbol;
+			if (++size * 2 > symbols.length) {
+				resize();
+				index = indexOf(symbols, symbol);
+			}
+		}
+		prices[index] = price;
+	}
+
+	public void putAll(PriceTable priceTable) {
+		for (int i = 0; i < priceTable.symbols.length; i++) {
+			if (priceTable.symbols[i] != null) {
+				put(priceTable.symbols[i], priceTable.prices[i]);
+			}
+		}
+	}
+
+	public Double get(String symbol) {
+		int index = indexOf(symbols, symbol);
+		return symbols[index] != null ? prices[index] : null;
+	}
+
+	public double get(String symbol, double defaultValue) {
+		int index = indexOf(symbols, symbol);
+		return symbols[index] != null ? prices[index] : defaultValue;
+	}
+
+	public boolean contains(String symbol) {
+		return symbols[indexOf(symbols, symbol)] != null;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	private void resize() {
+		String[] oldSymbols = symbols;
+		double[] oldPrices = prices;
+		symbols = new String[oldSymbols.length * 2];
+		prices = new double[oldSymbols.length * 2];
+		for (int i = 0; i < oldSymbols.length; i++) {
+			if (oldSymbols[i] != null) {
+				int index = indexOf(symbols, oldSymbols[i]);
+				symbols[index] = oldSymbols[i];
+				prices[index] = oldPrices[i];
+			}
+		}
+	}
+
+	private static int indexOf(String[] symbols, String symbol) {
+		int mask = symbols.length - 1;
+		int hash = symbol.hashCode();
+		int index = (hash ^ (hash >>> 16)) & mask;
+		while (symbols[index] != null && !symbols[index].equals(symbol)) {
+			index = (index + 1) & mask;
+		}
+		return index;
+	}
+
+}
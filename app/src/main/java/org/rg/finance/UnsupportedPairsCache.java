@@ -0,0 +1,70 @@
+package org.rg.finance;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class UnsupportedPairsCache {
+	private final Map<String, Long> expirationTimes;
+	private volatile long timeToLive;
+
+	public UnsupportedPairsCache() {
+		this.expirationTimes = new ConcurrentHashMap<>();
+		this.timeToLive = 21600000L;
+	}
+
+	public boolean contains(String coinName, String collateral) {
+		String pair = toPair(coinName, collateral);
+		Long expirationTime = expirationTimes.get(pair);
+		if (expirationTime == null) {
+			return false;
+		}
+		if (expirationTime <= System.currentTimeMillis()) {
+			//The pair will be requested again: if it is still unsupported it will be added back
+			expirationTimes.remove(pair, expirationTime);
+			return false;
+		}
+		return true;
+	}
+
+	public boolean add(String coinName, String collateral) {
+		return expirationTimes.put(toPair(coinName, collateral), System.currentTimeMillis() + timeToLive) == null;
+	}
+
+	public void remove(String coinName, String collateral) {
+		expirationTimes.remove(toPair(coinName, collateral));
+	}
+
+	public void setTimeToLive(long timeToLive) {
+		this.timeToLive = timeToLive;
+	}
+
+	public long getTimeToLive() {
+		return timeToLive;
+	}
+
+	public Map<String, Long> toMap() {
+		long now = System.currentTimeMillis();
+		Map<String, Long> pairs = new HashMap<>();
+		for (Map.Entry<String, Long> pair : expirationTimes.entrySet()) {
+			if (pair.getValue() > now) {
+				pairs.put(pair.getKey(), pair.getValue());
+			}
+		}
+		return pairs;
+	}
+
+	public void load(Map<String, Long> pairs) {
+		long now = System.currentTimeMillis();
+		for (Map.Entry<String, Long> pair : pairs.entrySet()) {
+			if (pair.getValue() > now) {
+				expirationTimes.putIfAbsent(pair.getKey(), pair.getValue());
+			}
+		}
+	}
+
+	private static String toPair(String coinName, String collateral) {
+		return coinName + "/" + collateral;
+	}
+
+}
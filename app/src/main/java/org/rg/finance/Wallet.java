@@ -1,30 +1,58 @@
 package org.rg.finance;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
 import java.util.function.Supplier;
 
+import org.rg.util.HttpTransport;
 import org.rg.util.LoggerChain;
+import org.rg.util.RateLimiter;
+import org.rg.util.RequestCoalescer;
 import org.rg.util.RestTemplateSupplier;
+import org.rg.util.RestTemplateTransport;
+import org.rg.util.Throwables;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriTemplate;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 
 public interface Wallet {
 
 	public void setExecutorServiceSupplier(Supplier<ExecutorService> executorServiceSupplier);
 
+	public void setHttpTransport(HttpTransport httpTransport);
+
 	public String getId();
 
 	public String getName();
@@ -39,8 +67,12 @@ public interface Wallet {
 
 	public Double getBalance();
 
+	public BalanceSnapshot getBalanceSnapshot();
+
 	public Double getValueForCoin(String coinName);
 
+	public Map<String, Double> getValuesForCoins(Collection<String> coinNames);
+
 	public Double getQuantityForCoin(String coinName);
 
 	public Double getAmountForCoin(String coinName);
@@ -49,16 +81,44 @@ public interface Wallet {
 
 	public String getCoinNameForAlias(String alias);
 
+	public UnsupportedPairsCache getUnsupportedPairs();
+
+	public double getRateLimitUsage();
+
+	public Map<String, Long> getRequestCoalescingMetrics();
+
+	public CompletableFuture<Collection<String>> getOwnedCoinsAsync();
+
+	public CompletableFuture<Double> getBalanceAsync();
+
+	public CompletableFuture<BalanceSnapshot> getBalanceSnapshotAsync();
+
+	public CompletableFuture<Double> getValueForCoinAsync(String coinName);
+
+	public CompletableFuture<Map<String, Double>> getValuesForCoinsAsync(Collection<String> coinNames);
+
+	public CompletableFuture<Double> getQuantityForCoinAsync(String coinName);
+
+	public CompletableFuture<Double> getAmountForCoinAsync(String coinName);
+
 	abstract class Abst implements Wallet {
+		private static final ObjectMapper objectMapper = new ObjectMapper();
 		protected String name;
 	    protected String apiKey;
 	    protected String apiSecret;
 		protected Map<String, String> aliasesForCoinNames;
 	    protected Map<String, String> coinCollaterals;
 	    protected RestTemplate restTemplate;
+		protected volatile HttpTransport httpTransport;
 		protected Supplier<ExecutorService> executorServiceSupplier;
 		protected Long timeOffset;
+		private volatile HmacSigner signer;
+		private volatile ClockSynchronizer clockSynchronizer;
 		private final String id;
+		private final Map<String, List<String>> conversionPaths;
+		private final Set<String> reportedMissingConversions;
+		private final UnsupportedPairsCache unsupportedPairs;
+		protected final RequestCoalescer requestCoalescer;
 
 		public Abst(RestTemplate restTemplate, String apiKey, String apiSecret, Map<String, String> aliasesForCoinNames, Map<String, String> coinCollaterals) {
 			this(restTemplate, null, apiKey, apiSecret, aliasesForCoinNames, coinCollaterals);
@@ -67,6 +127,7 @@ public interface Wallet {
 	    public Abst(RestTemplate restTemplate, Supplier<ExecutorService> executorServiceSupplier, String apiKey, String apiSecret, Map<String, String> aliasesForCoinNames, Map<String, String> coinCollaterals) {
 			this.apiKey = apiKey;
 			this.apiSecret = apiSecret;
+			this.signer = apiSecret != null ? new HmacSigner(apiSecret) : null;
 			this.aliasesForCoinNames = aliasesForCoinNames;
 			this.coinCollaterals = coinCollaterals;
 			this.restTemplate = Optional.ofNullable(restTemplate).orElseGet(RestTemplateSupplier.getSharedInstance()::get);
@@ -74,6 +135,43 @@ public interface Wallet {
 			this.timeOffset = 0L;
 			this.name = getClass().getSimpleName();
 			this.id = getClass().getName() + "-" + UUID.randomUUID().toString();
+			this.conversionPaths = new ConcurrentHashMap<>();
+			this.reportedMissingConversions = ConcurrentHashMap.newKeySet();
+			this.unsupportedPairs = new UnsupportedPairsCache();
+			this.requestCoalescer = new RequestCoalescer();
+			installTransport(new RestTemplateTransport(this.restTemplate, () -> this.executorServiceSupplier.get()));
+		}
+
+		@Override
+		public void setHttpTransport(HttpTransport httpTransport) {
+			RateLimiter rateLimiter = httpTransport.getRateLimiter();
+			if (rateLimiter != null) {
+				setupRateLimiter(rateLimiter);
+			}
+			installTransport(httpTransport);
+		}
+
+		//Used by the constructor instead of setHttpTransport, since setupRateLimiter is overridden by subclasses
+		//that are not initialized yet: they register their buckets at the end of their own constructors
+		private void installTransport(HttpTransport httpTransport) {
+			this.httpTransport = httpTransport;
+		}
+
+		protected void setupRateLimiter(RateLimiter rateLimiter) {}
+
+		@Override
+		public double getRateLimitUsage() {
+			return 0D;
+		}
+
+		@Override
+		public Map<String, Long> getRequestCoalescingMetrics() {
+			return requestCoalescer.getMetrics();
+		}
+
+		protected double getRateLimitUsage(String host) {
+			RateLimiter rateLimiter = httpTransport.getRateLimiter();
+			return rateLimiter != null ? rateLimiter.getUsage(host) : 0D;
 		}
 
 		@Override
@@ -101,42 +199,139 @@ public interface Wallet {
 		@Override
 		public boolean setApiSecret(String newValue) {
 			boolean changed = newValue != apiSecret && apiSecret == null || !newValue.equals(apiSecret);
+			if (changed) {
+				this.signer = newValue != null ? new HmacSigner(newValue) : null;
+			}
 			this.apiSecret = newValue;
 			return changed;
 		}
 
 		@Override
 		public Double getValueForCoin(String coinName) {
+			PriceGraph priceGraph = new PriceGraph();
+			addConversionRates(priceGraph, coinName, getValueRetrieverForCoins(Collections.singletonList(coinName)));
+			return computeValueForCoin(coinName, priceGraph);
+		}
+
+		@Override
+		public Map<String, Double> getValuesForCoins(Collection<String> coinNames) {
+			return computeValuesForCoins(coinNames, getValueRetrieverForCoins(coinNames));
+		}
+
+		private Map<String, Double> computeValuesForCoins(Collection<String> coinNames, BiFunction<String, String, Double> valueRetriever) {
+			PriceGraph priceGraph = new PriceGraph();
+			Map<String, Double> values = new LinkedHashMap<>();
+			for (String coinName : coinNames) {
+				try {
+					addConversionRates(priceGraph, coinName, valueRetriever);
+					values.put(coinName, computeValueForCoin(coinName, priceGraph));
+				} catch (Throwable exc) {
+					LoggerChain.getInstance().logError(getName() + " exception while retrieving value for coin " + coinName + ": " + exc.getMessage());
+				}
+			}
+			return values;
+		}
+
+		protected BiFunction<String, String, Double> getValueRetrieverForCoins(Collection<String> coinNames) {
+			return this::getValueForCoin;
+		}
+
+		//The wallets that retrieve the prices through readJsonAsync override this so that no thread waits for them
+		protected CompletableFuture<BiFunction<String, String, Double>> getValueRetrieverForCoinsAsync(Collection<String> coinNames) {
+			return supplyAsync(() -> getValueRetrieverForCoins(coinNames));
+		}
+
+		//Walks the collateral chain of the coin: every pair is retrieved once per price graph, so the coins that
+		//share a collateral do not pay again for its conversion
+		protected void addConversionRates(PriceGraph priceGraph, String coinName, BiFunction<String, String, Double> valueRetriever) {
+			String defaultCollateral = coinCollaterals.get("DEFAULT");
+			String collateral = getCollateralForCoin(coinName);
+			while (collateral != null && !coinName.equals(collateral) && !priceGraph.contains(coinName, collateral)) {
+				String coinAlias = getCoinNameForAlias(coinName);
+				if (unsupportedPairs.contains(coinAlias, collateral)) {
+					return;
+				}
+				Double valueForCoin;
+				try {
+					valueForCoin = valueRetriever.apply(coinAlias, collateral);
+				} catch (Throwable exc) {
+					if (!checkExceptionForGetValueForCoin(exc)) {
+						throw exc;
+					}
+					valueForCoin = null;
+				}
+				if (valueForCoin == null) {
+					addUnsupportedPair(coinName, coinAlias, collateral);
+					return;
+				}
+				priceGraph.putRate(coinName, collateral, valueForCoin);
+				if (collateral.equals(defaultCollateral)) {
+					return;
+				}
+				coinName = collateral;
+				collateral = getCollateralForCoin(coinName);
+			}
+		}
+
+		protected Double computeValueForCoin(String coinName, PriceGraph priceGraph) {
 			String collateral = getCollateralForCoin(coinName);
 			if (collateral == null) {
 				return Double.NaN;
 			}
-			String coinAlias = getCoinNameForAlias(coinName);
-			try {
-				Double valueForCoin = coinName.equals(collateral) ?
-					1D :
-					getValueForCoin(coinAlias, collateral);
-				if (collateral.equals(coinCollaterals.get("DEFAULT"))) {
-					return valueForCoin;
-				} else {
-					return valueForCoin * getValueForCoin(collateral);
-				}
-			} catch (Throwable exc) {
-				if (checkExceptionForGetValueForCoin(exc)) {
-					String coinNameAndAlias = coinName.equals(coinAlias)? coinName : coinName + "/" + coinAlias;
-					LoggerChain.getInstance().logError("No collateral for coin " + coinNameAndAlias + " on " + getName());
-					synchronized (coinCollaterals) {
-						Map<String, String> coinCollateralsTemp = new LinkedHashMap<>();
-						Map<String, String> oldCoinCollaterals = coinCollaterals;
-						coinCollateralsTemp.putAll(oldCoinCollaterals);
-						coinCollateralsTemp.put(coinName, null);
-						coinCollaterals = coinCollateralsTemp;
-						oldCoinCollaterals.clear();
+			String defaultCollateral = coinCollaterals.get("DEFAULT");
+			if (coinName.equals(collateral) || coinName.equals(defaultCollateral)) {
+				return 1D;
+			}
+			List<String> conversionPath = conversionPaths.get(coinName);
+			Double valueForCoin = conversionPath != null ? priceGraph.getRate(conversionPath) : null;
+			if (valueForCoin == null) {
+				conversionPath = priceGraph.findPath(coinName, defaultCollateral);
+				if (conversionPath == null) {
+					if (reportedMissingConversions.add(coinName)) {
+						LoggerChain.getInstance().logError("No conversion path from " + coinName + " to " + defaultCollateral + " on " + getName());
 					}
 					return Double.NaN;
 				}
-				throw exc;
+				conversionPaths.put(coinName, conversionPath);
+				reportedMissingConversions.remove(coinName);
+				valueForCoin = priceGraph.getRate(conversionPath);
+			}
+			return valueForCoin;
+		}
+
+		private void addUnsupportedPair(String coinName, String coinAlias, String collateral) {
+			if (unsupportedPairs.add(coinAlias, collateral)) {
+				String coinNameAndAlias = coinName.equals(coinAlias)? coinName : coinName + "/" + coinAlias;
+				LoggerChain.getInstance().logError(
+					"No collateral " + collateral + " for coin " + coinNameAndAlias + " on " + getName() +
+					": the pair will be checked again in " + unsupportedPairs.getTimeToLive() / 60000 + " minutes"
+				);
+			}
+		}
+
+		@Override
+		public UnsupportedPairsCache getUnsupportedPairs() {
+			return unsupportedPairs;
+		}
+
+		protected Collection<String> getSymbolsForCoins(Collection<String> coinNames, BiFunction<String, String, String> symbolBuilder) {
+			Collection<String> symbols = new LinkedHashSet<>();
+			for (String coinName : coinNames) {
+				String collateral = getCollateralForCoin(coinName);
+				while (collateral != null && !coinName.equals(collateral)) {
+					String coinAlias = getCoinNameForAlias(coinName);
+					if (unsupportedPairs.contains(coinAlias, collateral)) {
+						break;
+					}
+					symbols.add(symbolBuilder.apply(coinAlias, collateral));
+					if (collateral.equals(coinCollaterals.get("DEFAULT"))) {
+						break;
+					}
+					coinName = collateral;
+					collateral = getCollateralForCoin(coinName);
+				}
 			}
+			return symbols;
 		}
 
 		protected abstract Double getValueForCoin(String coinName, String collateral);
@@ -158,7 +353,11 @@ public interface Wallet {
 
 		@Override
 		public Collection<String> getOwnedCoins() {
-			List<String> coinNames = new ArrayList<>(getOwnedCoinsWithEffectiveNames());
+			return replaceEffectiveNamesWithAliases(getOwnedCoinsWithEffectiveNames());
+		}
+
+		private Collection<String> replaceEffectiveNamesWithAliases(Collection<String> effectiveCoinNames) {
+			List<String> coinNames = new ArrayList<>(effectiveCoinNames);
 			aliasesForCoinNames.entrySet().stream().forEach(entry -> Collections.replaceAll(coinNames, entry.getValue(), entry.getKey()));
 			return new TreeSet<>(coinNames);
 		}
@@ -170,14 +369,108 @@ public interface Wallet {
 
 	    @Override
 		public Double getBalance() {
-			Collection<CompletableFuture<Double>> tasks = new ArrayList<>();
-			for (String coinName : getOwnedCoinsWithEffectiveNames()) {
-				tasks.add(CompletableFuture.supplyAsync(() ->
-					this.getAmountForCoin(coinName), executorServiceSupplier.get())
+			return getBalanceSnapshot().getTotal();
+	    }
+
+		@Override
+		public CompletableFuture<Collection<String>> getOwnedCoinsAsync() {
+			return getOwnedCoinsWithEffectiveNamesAsync().thenApply(this::replaceEffectiveNamesWithAliases);
+		}
+
+		protected CompletableFuture<Collection<String>> getOwnedCoinsWithEffectiveNamesAsync() {
+			return supplyAsync(this::getOwnedCoinsWithEffectiveNames);
+		}
+
+		@Override
+		public CompletableFuture<Double> getBalanceAsync() {
+			return getBalanceSnapshotAsync().thenApply(BalanceSnapshot::getTotal);
+		}
+
+		//One balance snapshot and one price table per call: the cost depends on the exchange, not on the number of owned coins
+		@Override
+		public BalanceSnapshot getBalanceSnapshot() {
+			Map<String, Double> quantities = new TreeMap<>(getQuantitiesForEffectiveCoinNames());
+			return buildBalanceSnapshot(quantities, getValueRetrieverForCoins(quantities.keySet()));
+		}
+
+		@Override
+		public CompletableFuture<BalanceSnapshot> getBalanceSnapshotAsync() {
+			return getQuantitiesForEffectiveCoinNamesAsync().thenCompose(unsortedQuantities -> {
+				Map<String, Double> quantities = new TreeMap<>(unsortedQuantities);
+				return getValueRetrieverForCoinsAsync(quantities.keySet()).thenApply(valueRetriever ->
+					buildBalanceSnapshot(quantities, valueRetriever)
 				);
+			});
+		}
+
+		private BalanceSnapshot buildBalanceSnapshot(Map<String, Double> quantities, BiFunction<String, String, Double> valueRetriever) {
+			String[] coinNames = quantities.keySet().toArray(new String[quantities.size()]);
+			double[] coinQuantities = new double[coinNames.length];
+			double[] unitPrices = new double[coinNames.length];
+			PriceGraph priceGraph = new PriceGraph();
+			for (int i = 0; i < coinNames.length; i++) {
+				coinQuantities[i] = quantities.get(coinNames[i]);
+				addConversionRates(priceGraph, coinNames[i], valueRetriever);
+				unitPrices[i] = computeValueForCoin(coinNames[i], priceGraph);
 			}
-			return tasks.stream().mapToDouble(CompletableFuture::join).sum();
-	    }
+			return new BalanceSnapshot(coinNames, coinQuantities, unitPrices);
+		}
+
+		protected Map<String, Double> getQuantitiesForEffectiveCoinNames() {
+			Map<String, Double> quantities = new HashMap<>();
+			for (String coinName : getOwnedCoinsWithEffectiveNames()) {
+				quantities.put(coinName, getQuantityForCoin(coinName));
+			}
+			return quantities;
+		}
+
+		protected CompletableFuture<Map<String, Double>> getQuantitiesForEffectiveCoinNamesAsync() {
+			return supplyAsync(this::getQuantitiesForEffectiveCoinNames);
+		}
+
+		@Override
+		public CompletableFuture<Double> getValueForCoinAsync(String coinName) {
+			return getValueRetrieverForCoinsAsync(Collections.singletonList(coinName)).thenApply(valueRetriever -> {
+				PriceGraph priceGraph = new PriceGraph();
+				addConversionRates(priceGraph, coinName, valueRetriever);
+				return computeValueForCoin(coinName, priceGraph);
+			});
+		}
+
+		@Override
+		public CompletableFuture<Map<String, Double>> getValuesForCoinsAsync(Collection<String> coinNames) {
+			return getValueRetrieverForCoinsAsync(coinNames).thenApply(valueRetriever -> computeValuesForCoins(coinNames, valueRetriever));
+		}
+
+		@Override
+		public CompletableFuture<Double> getQuantityForCoinAsync(String coinName) {
+			return getQuantityForEffectiveCoinNameAsync(getCoinNameForAlias(coinName));
+		}
+
+		protected CompletableFuture<Double> getQuantityForEffectiveCoinNameAsync(String coinName) {
+			return supplyAsync(() -> getQuantityForEffectiveCoinName(coinName));
+		}
+
+		@Override
+		public CompletableFuture<Double> getAmountForCoinAsync(String coinName) {
+			return getQuantityForCoinAsync(coinName).thenCombine(getValueForCoinAsync(coinName), (quantity, value) -> quantity * value);
+		}
+
+		protected <T> CompletableFuture<T> supplyAsync(Supplier<T> supplier) {
+			return CompletableFuture.supplyAsync(supplier, executorServiceSupplier.get());
+		}
+
+		protected static <T> T join(CompletableFuture<T> task) {
+			try {
+				return task.join();
+			} catch (CompletionException exc) {
+				return Throwables.sneakyThrow(exc.getCause());
+			}
+		}
+
+		protected static Throwable unwrap(Throwable exc) {
+			return exc instanceof CompletionException && exc.getCause() != null ? exc.getCause() : exc;
+		}
 
 	    @Override
 		public String getCollateralForCoin(String coinName) {
@@ -194,18 +487,103 @@ public interface Wallet {
 			return getQuantityForEffectiveCoinName(getCoinNameForAlias(coinName));
 		}
 
+		protected <T> List<T> runInParallel(List<Supplier<T>> suppliers) {
+			List<AtomicBoolean> claims = new ArrayList<>();
+			List<CompletableFuture<T>> tasks = new ArrayList<>();
+			for (Supplier<T> supplier : suppliers) {
+				AtomicBoolean claim = new AtomicBoolean();
+				CompletableFuture<T> task = new CompletableFuture<>();
+				claims.add(claim);
+				tasks.add(task);
+				executorServiceSupplier.get().execute(() -> run(supplier, claim, task));
+			}
+			List<T> results = new ArrayList<>();
+			for (int i = 0; i < tasks.size(); i++) {
+				//The tasks not yet started by the executor are executed in the current thread so that
+				//the caller never waits for a task that is queued behind it
+				run(suppliers.get(i), claims.get(i), tasks.get(i));
+				results.add(join(tasks.get(i)));
+			}
+			return results;
+		}
+
+		private <T> void run(Supplier<T> supplier, AtomicBoolean claim, CompletableFuture<T> task) {
+			if (claim.compareAndSet(false, true)) {
+				try {
+					task.complete(supplier.get());
+				} catch (Throwable exc) {
+					task.completeExceptionally(exc);
+				}
+			}
+		}
+
+		protected <T> T readJson(String url, HttpMethod method, HttpEntity<?> requestEntity, JsonReader<T> jsonReader) {
+			return readJson(new UriTemplate(url).expand(), method, requestEntity, jsonReader);
+		}
+
+		protected <T> T readJson(URI uri, HttpMethod method, HttpEntity<?> requestEntity, JsonReader<T> jsonReader) {
+			return httpTransport.execute(uri, method, buildJsonHeaders(requestEntity), buildJsonBody(requestEntity), new JsonResponseReader<>(jsonReader));
+		}
+
+		protected <T> CompletableFuture<T> readJsonAsync(String url, HttpMethod method, HttpEntity<?> requestEntity, JsonReader<T> jsonReader) {
+			return readJsonAsync(new UriTemplate(url).expand(), method, requestEntity, jsonReader);
+		}
+
+		protected <T> CompletableFuture<T> readJsonAsync(URI uri, HttpMethod method, HttpEntity<?> requestEntity, JsonReader<T> jsonReader) {
+			return httpTransport.executeAsync(uri, method, buildJsonHeaders(requestEntity), buildJsonBody(requestEntity), new JsonResponseReader<>(jsonReader));
+		}
+
+		private HttpHeaders buildJsonHeaders(HttpEntity<?> requestEntity) {
+			HttpHeaders headers = new HttpHeaders();
+			headers.setAccept(Collections.singletonList(MediaType.APPLICATION_JSON));
+			if (requestEntity != null) {
+				headers.putAll(requestEntity.getHeaders());
+				if (requestEntity.getBody() != null) {
+					headers.setContentType(MediaType.APPLICATION_JSON);
+				}
+			}
+			return headers;
+		}
+
+		private byte[] buildJsonBody(HttpEntity<?> requestEntity) {
+			if (requestEntity == null || requestEntity.getBody() == null) {
+				return null;
+			}
+			try {
+				return objectMapper.writeValueAsBytes(requestEntity.getBody());
+			} catch (JsonProcessingException exc) {
+				return Throwables.sneakyThrow(exc);
+			}
+		}
+
+		protected static boolean moveToField(JsonParser parser, String fieldName) throws IOException {
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				JsonToken token = parser.nextToken();
+				if (fieldName.equals(parser.getCurrentName())) {
+					return token != JsonToken.VALUE_NULL;
+				}
+				parser.skipChildren();
+			}
+			return false;
+		}
+
+		protected String sign(CharSequence data) {
+			return signer.sign(data);
+		}
+
+		protected String sign(HmacSigner.PayloadWriter payloadWriter) {
+			return signer.sign(payloadWriter);
+		}
+
 		protected String joinQueryParameters(Map<String, String> parameters) {
-	        String queryString = "";
-	        boolean isFirst = true;
+	        StringBuilder queryString = new StringBuilder();
 	        for (Map.Entry<String, String> mapElement : parameters.entrySet()) {
-	            if (isFirst) {
-	                isFirst = false;
-	                queryString += mapElement.getKey() + "=" + mapElement.getValue();
-	            } else {
-	                queryString += "&" + mapElement.getKey() + "=" + mapElement.getValue();
+	            if (queryString.length() > 0) {
+	                queryString.append('&');
 	            }
+	            queryString.append(mapElement.getKey()).append('=').append(mapElement.getValue());
 	        }
-	        return queryString;
+	        return queryString.toString();
 	    }
 
 	    protected Long currentTimeMillis() {
@@ -213,13 +591,50 @@ public interface Wallet {
 	    }
 
 		protected Long retrieveCurrentTime() {
+			ClockSynchronizer clockSynchronizer = this.clockSynchronizer;
+			if (clockSynchronizer != null) {
+				return clockSynchronizer.currentTimeMillis();
+			}
 			return LocalDateTime.now().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
 		}
 
+		protected synchronized void enableClockSynchronizer(Supplier<Long> serverTimeRetriever) {
+			if (clockSynchronizer == null) {
+				clockSynchronizer = new ClockSynchronizer(serverTimeRetriever, () -> executorServiceSupplier.get());
+			}
+		}
+
+		protected synchronized void disableClockSynchronizer() {
+			clockSynchronizer = null;
+		}
+
 		public void setTimeOffset(Long timeOffset) {
 			this.timeOffset = timeOffset;
 		}
 
+		@FunctionalInterface
+		protected static interface JsonReader<T> {
+
+			public T read(JsonParser parser) throws IOException;
+
+		}
+
+		private static class JsonResponseReader<T> implements HttpTransport.ResponseReader<T> {
+			private final JsonReader<T> jsonReader;
+
+			private JsonResponseReader(JsonReader<T> jsonReader) {
+				this.jsonReader = jsonReader;
+			}
+
+			@Override
+			public T read(InputStream body) throws IOException {
+				try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+					parser.nextToken();
+					return jsonReader.read(parser);
+				}
+			}
+		}
+
 	}
 
 }
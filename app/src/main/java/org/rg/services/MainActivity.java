@@ -1,5 +1,6 @@
 package org.rg.services;
 
+import android.content.SharedPreferences;
 import android.os.Bundle;
 import android.os.StrictMode;
 import android.view.Menu;
@@ -14,6 +15,7 @@ import org.rg.finance.Wallet;
 import org.rg.services.ui.main.MainFragment;
 import org.rg.services.ui.main.SettingsFragment;
 import org.rg.util.LoggerChain;
+import org.rg.util.PriorityLaneExecutor;
 import org.rg.util.RestTemplateSupplier;
 import org.rg.util.Throwables;
 import org.springframework.web.client.RestTemplate;
@@ -28,13 +30,12 @@ import java.io.ObjectOutputStream;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 
@@ -65,13 +66,18 @@ public class MainActivity extends AppCompatActivity {
     }
 
     public static class Engine {
-        private static ExecutorService executorService;
+        public enum Lane {
+            OWNED_COINS, WATCHLIST, BACKGROUND
+        }
+        private static PriorityLaneExecutor executorService;
         private static Supplier<Integer> executorServiceSupplierSizeSupplier;
-        private static int currentExecutorServiceSize;
         private final static Collection<Wallet> wallets;
 
         static {
             wallets = new ArrayList<>();
+            RestTemplateSupplier.getSharedInstance()
+                .registerExchangeHost("api.binance.com")
+                .registerExchangeHost("api.crypto.com");
         }
 
         public static <W extends Wallet> W getWallet(Class<W> type) {
@@ -89,6 +95,7 @@ public class MainActivity extends AppCompatActivity {
                                     null
                                 )
                             );
+                            wallet.setHttpTransport(RestTemplateSupplier.getSharedInstance().getAsyncHttpTransport());
                         } catch (Throwable exc) {
                             Throwables.sneakyThrow(exc);
                         }
@@ -98,37 +105,52 @@ public class MainActivity extends AppCompatActivity {
             return wallet;
         }
 
+        //The tasks submitted by a task that is running in the engine keep its lane
         public static ExecutorService getExecutorService() {
-            if (executorService == null || Engine.currentExecutorServiceSize != executorServiceSupplierSizeSupplier.get()) {
+            return getPriorityLaneExecutor().getCallerLane(Lane.OWNED_COINS.ordinal());
+        }
+
+        public static ExecutorService getExecutorService(Lane lane) {
+            return getPriorityLaneExecutor().getLane(lane.ordinal());
+        }
+
+        public static Map<String, Map<String, Long>> getExecutorServiceMetrics() {
+            return getPriorityLaneExecutor().getMetrics();
+        }
+
+        private static PriorityLaneExecutor getPriorityLaneExecutor() {
+            if (executorService == null) {
                 synchronized (Engine.class) {
-                    int currentExecutorServiceSize = executorServiceSupplierSizeSupplier.get();
-                    if (executorService == null || Engine.currentExecutorServiceSize != currentExecutorServiceSize) {
-                        ExecutorService oldExecutorService = executorService;
-                        //ForkJoinPool.commonPool()
-                        executorService = Executors.newFixedThreadPool(currentExecutorServiceSize);
-                        Engine.currentExecutorServiceSize = currentExecutorServiceSize;
-                        shutDown(oldExecutorService, () -> executorService);
+                    if (executorService == null) {
+                        int executorServiceSize = executorServiceSupplierSizeSupplier.get();
+                        executorService = new PriorityLaneExecutor(
+                            "Engine", executorServiceSize,
+                            Arrays.stream(Lane.values()).map(Lane::name).toArray(String[]::new)
+                        );
+                        RestTemplateSupplier.getSharedInstance().setMaxConnections(executorServiceSize);
                     }
                 }
             }
             return executorService;
         }
 
-        static void resetExecutorService() {
-            ExecutorService oldExecutorService;
+        static void resizeExecutorService() {
+            int executorServiceSize = executorServiceSupplierSizeSupplier.get();
             synchronized (Engine.class) {
-                oldExecutorService = executorService;
-                executorService = null;
+                PriorityLaneExecutor executorService = getPriorityLaneExecutor();
+                if (executorService.getPoolSize() != executorServiceSize) {
+                    executorService.setPoolSize(executorServiceSize);
+                    RestTemplateSupplier.getSharedInstance().setMaxConnections(executorServiceSize);
+                }
             }
-            shutDown(oldExecutorService, Engine::getExecutorService);
         }
+    }
 
-        private static void shutDown(ExecutorService toBeShuttedDown, Supplier<ExecutorService> executorSupplier) {
-            if (toBeShuttedDown != null) {
-                CompletableFuture.runAsync(toBeShuttedDown::shutdown, executorSupplier.get());
-            }
+    private final SharedPreferences.OnSharedPreferenceChangeListener threadPoolSizeChangeListener = (sharedPreferences, key) -> {
+        if ("threadPoolSize".equals(key)) {
+            Engine.resizeExecutorService();
         }
-    }
+    };
 
     public MainActivity() {
         int SDK_INT = android.os.Build.VERSION.SDK_INT;
@@ -150,6 +172,14 @@ public class MainActivity extends AppCompatActivity {
         storeMapToCache(Model.currentCoinRawValues, "latestCoin.values");
     }
 
+    public void storeUnsupportedPairs(Wallet wallet) {
+        storeMapToCache(wallet.getUnsupportedPairs().toMap(), wallet.getName() + ".unsupportedPairs");
+    }
+
+    public void loadUnsupportedPairs(Wallet wallet) {
+        Optional.ofNullable(this.<String, Long>loadMapFromCache(wallet.getName() + ".unsupportedPairs")).ifPresent(wallet.getUnsupportedPairs()::load);
+    }
+
     private void storeMapToCache(Map<?, ?> map, String fileName) {
         try {
             File outputDir = getCacheDir();
@@ -196,7 +226,8 @@ public class MainActivity extends AppCompatActivity {
         };
         LoggerChain.getInstance().appendExceptionLogger(logger);
         LoggerChain.getInstance().appendInfoLogger(logger);
-        Engine.resetExecutorService();
+        Engine.resizeExecutorService();
+        PreferenceManager.getDefaultSharedPreferences(this).registerOnSharedPreferenceChangeListener(threadPoolSizeChangeListener);
         if (Model.balancesValues.isEmpty()) {
             Optional.ofNullable(loadMapFromCache("latestBalance.values")).ifPresent(map -> map.forEach((key, value) ->  Model.balancesValues.put((String)key, value)));
         }
@@ -212,6 +243,12 @@ public class MainActivity extends AppCompatActivity {
 
     }
 
+    @Override
+    protected void onDestroy() {
+        PreferenceManager.getDefaultSharedPreferences(this).unregisterOnSharedPreferenceChangeListener(threadPoolSizeChangeListener);
+        super.onDestroy();
+    }
+
     public MainFragment getMainFragment(){
         return (MainFragment)getSupportFragmentManager().findFragmentById(R.id.container);
     }
@@ -0,0 +1,148 @@
+package org.rg.services.ui.main;
+
+import org.rg.finance.Wallet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+class CoinRefreshCadence {
+    static final Collection<String> STABLE_COINS = new HashSet<>(Arrays.asList("USDT", "BUSD", "USDC", "DAI", "TUSD", "EUR"));
+    static final long DEFAULT_MIN_INTERVAL = 1000L;
+    static final long DEFAULT_BASE_INTERVAL = 5000L;
+    static final long DEFAULT_MAX_INTERVAL = 60000L;
+    //Relative price change per second at which a coin is refreshed every base interval (about 3.6% per hour)
+    private static final double REFERENCE_CHANGE_RATE = 0.00001D;
+    private static final double CHANGE_RATE_SMOOTHING_FACTOR = 0.3D;
+    private static final double RATE_LIMIT_USAGE_THRESHOLD = 0.5D;
+    private static final double MAX_BACK_OFF_FACTOR = 8D;
+
+    private final Map<Wallet, Map<String, CoinState>> coinStates;
+    private final long minInterval;
+    private final long baseInterval;
+    private final long maxInterval;
+
+    CoinRefreshCadence(long minInterval) {
+        this.coinStates = new ConcurrentHashMap<>();
+        this.minInterval = Math.max(minInterval, 1L);
+        this.baseInterval = Math.max(DEFAULT_BASE_INTERVAL, this.minInterval);
+        this.maxInterval = Math.max(DEFAULT_MAX_INTERVAL, this.baseInterval);
+    }
+
+    //Returns the coins whose deadline has expired, sorted by deadline, and marks them as in flight until
+    //onUpdated, onFailed or release is called for them
+    List<String> acquireDueCoins(Wallet wallet, Collection<String> coinNames, long now) {
+        Map<String, CoinState> coinStatesForWallet = getCoinStates(wallet);
+        List<String> dueCoins = new ArrayList<>();
+        for (String coinName : coinNames) {
+            CoinState coinState = coinStatesForWallet.computeIfAbsent(coinName, key -> new CoinState());
+            synchronized (coinState) {
+                if (!coinState.inFlight && coinState.deadline <= now) {
+                    coinState.inFlight = true;
+                    dueCoins.add(coinName);
+                }
+            }
+        }
+        dueCoins.sort(Comparator.comparingLong(coinName -> getDeadline(wallet, coinName)));
+        return dueCoins;
+    }
+
+    void release(Wallet wallet, Collection<String> coinNames) {
+        Map<String, CoinState> coinStatesForWallet = getCoinStates(wallet);
+        for (String coinName : coinNames) {
+            CoinState coinState = coinStatesForWallet.get(coinName);
+            if (coinState != null) {
+                coinState.inFlight = false;
+            }
+        }
+    }
+
+    long getDeadline(Wallet wallet, String coinName) {
+        CoinState coinState = getCoinStates(wallet).get(coinName);
+        return coinState != null ? coinState.deadline : 0L;
+    }
+
+    //The coins in flight get a new deadline when their refresh completes, which is at least minInterval later
+    long getNextDeadline() {
+        long inFlightDeadline = System.currentTimeMillis() + minInterval;
+        long nextDeadline = Long.MAX_VALUE;
+        for (Map<String, CoinState> coinStatesForWallet : coinStates.values()) {
+            for (CoinState coinState : coinStatesForWallet.values()) {
+                nextDeadline = Math.min(nextDeadline, coinState.inFlight ? inFlightDeadline : coinState.deadline);
+            }
+        }
+        return nextDeadline;
+    }
+
+    void onUpdated(Wallet wallet, String coinName, Double unitPrice) {
+        long now = System.currentTimeMillis();
+        CoinState coinState = getCoinStates(wallet).computeIfAbsent(coinName, key -> new CoinState());
+        synchronized (coinState) {
+            if (unitPrice != null && !unitPrice.isNaN() && unitPrice > 0D) {
+                if (coinState.unitPrice != null && now > coinState.updateTime) {
+                    double changeRate = (Math.abs(unitPrice - coinState.unitPrice) / coinState.unitPrice) * 1000D / (now - coinState.updateTime);
+                    coinState.changeRate = coinState.changeRate != null ?
+                        (CHANGE_RATE_SMOOTHING_FACTOR * changeRate) + ((1D - CHANGE_RATE_SMOOTHING_FACTOR) * coinState.changeRate) :
+                        changeRate;
+                }
+                coinState.unitPrice = unitPrice;
+                coinState.updateTime = now;
+            }
+            coinState.deadline = now + getInterval(wallet, coinName, coinState.changeRate);
+            coinState.inFlight = false;
+        }
+    }
+
+    void onFailed(Wallet wallet, String coinName) {
+        CoinState coinState = getCoinStates(wallet).computeIfAbsent(coinName, key -> new CoinState());
+        synchronized (coinState) {
+            coinState.deadline = System.currentTimeMillis() + applyBackOff(wallet, baseInterval);
+            coinState.inFlight = false;
+        }
+    }
+
+    void retainAll(Wallet wallet, Collection<String> coinNames) {
+        getCoinStates(wallet).keySet().retainAll(coinNames);
+    }
+
+    private long getInterval(Wallet wallet, String coinName, Double changeRate) {
+        long interval;
+        if (STABLE_COINS.contains(coinName)) {
+            interval = maxInterval / 2;
+        } else if (changeRate == null) {
+            interval = baseInterval;
+        } else if (changeRate <= 0D) {
+            interval = maxInterval;
+        } else {
+            interval = Math.max(minInterval, Math.min(maxInterval, (long)(baseInterval * REFERENCE_CHANGE_RATE / changeRate)));
+        }
+        return applyBackOff(wallet, interval);
+    }
+
+    //The interval grows up to MAX_BACK_OFF_FACTOR times as the used weight reported by the exchange approaches the limit
+    private long applyBackOff(Wallet wallet, long interval) {
+        double rateLimitUsage = wallet.getRateLimitUsage();
+        if (rateLimitUsage <= RATE_LIMIT_USAGE_THRESHOLD) {
+            return interval;
+        }
+        double backOffFactor = 1D + ((rateLimitUsage - RATE_LIMIT_USAGE_THRESHOLD) / (1D - RATE_LIMIT_USAGE_THRESHOLD)) * (MAX_BACK_OFF_FACTOR - 1D);
+        return Math.min((long)(interval * backOffFactor), (long)(maxInterval * MAX_BACK_OFF_FACTOR));
+    }
+
+    private Map<String, CoinState> getCoinStates(Wallet wallet) {
+        return coinStates.computeIfAbsent(wallet, key -> new ConcurrentHashMap<>());
+    }
+
+    private static class CoinState {
+        private Double unitPrice;
+        private long updateTime;
+        private Double changeRate;
+        private volatile long deadline;
+        private volatile boolean inFlight;
+    }
+}
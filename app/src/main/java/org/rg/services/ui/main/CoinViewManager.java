@@ -21,6 +21,7 @@ import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -30,8 +31,8 @@ import java.util.Optional;
 import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.BiPredicate;
 import java.util.function.Function;
 import java.util.function.Supplier;
@@ -40,7 +41,7 @@ import java.util.stream.Collectors;
 class CoinViewManager {
     private final MainFragment fragment;
     private Map<Wallet, CompletableFuture<Collection<String>>> ownedCoinsSuppliers;
-    private Collection<CompletableFuture<Collection<String>>> retrievingCoinValueTasks;
+    private volatile Collection<CompletableFuture<Collection<String>>> retrievingCoinValueTasks;
     private Collection<String> coinsToBeAlwaysDisplayed;
     private AsyncLooper retrievingCoinValuesTask;
     private List<String> headerLabels;
@@ -297,6 +298,7 @@ class CoinViewManager {
             MainActivity mainActivity = fragment.getMainActivity();
             if (mainActivity != null) {
                 mainActivity.storeCurrentCoinValues();
+                fragment.wallets.forEach(mainActivity::storeUnsupportedPairs);
             }
         }
         retrievingCoinValuesTask.kill();
@@ -308,66 +310,106 @@ class CoinViewManager {
         launchOwnedCoinRetrievers(ownedCoinsSuppliers);
         AsyncLooper coinsToBeScannedRetriever = new AsyncLooper(() -> {
             launchOwnedCoinRetrievers(ownedCoinsSuppliers);
-        }, fragment::getExecutorService).atTheStartOfEveryIterationWaitFor(30000L);
+        }, () -> fragment.getExecutorService(MainActivity.Engine.Lane.BACKGROUND)).atTheStartOfEveryIterationWaitFor(30000L);
         MainActivity mainActivity = fragment.getMainActivity();
-        return new AsyncLooper(() -> {
-            Collection<CompletableFuture<Collection<String>>> retrievingCoinValueTasks = new CopyOnWriteArrayList<>();
-            Map<Supplier<String>, Function<Throwable, String>> delayedTasks = new HashMap<>();
+        long intervalBetweenRequestGroups = mainActivity.getLongValueFromAppPreferencesOrDefaultFromResources("intervalBetweenRequestGroups", R.integer.default_interval_between_request_groups_value);
+        CoinRefreshCadence refreshCadence = new CoinRefreshCadence(Math.max(intervalBetweenRequestGroups, CoinRefreshCadence.DEFAULT_MIN_INTERVAL));
+        //The owned coins suppliers whose completion already wakes up the looper
+        Collection<CompletableFuture<Collection<String>>> suppliersWaitedFor = ConcurrentHashMap.newKeySet();
+        return new AsyncLooper(looper -> {
+            //Coins are dispatched earliest deadline first across all wallets and the iteration never waits for the
+            //dispatched tasks: a slow wallet or coin only delays its own refresh
+            long now = System.currentTimeMillis();
+            Map<Wallet, Collection<String>> ownedCoinsForWallet = new HashMap<>();
+            Map<Wallet, List<String>> coinsToBeRefreshedForWallet = new HashMap<>();
             for (Wallet wallet : fragment.wallets) {
-                retrievingCoinValueTasks.add(
-                        CompletableFuture.supplyAsync(
-                                () -> {
-                                    Collection<CompletableFuture<String>> innerTasks = new ArrayList<>();
-                                    Collection<String> ownedCoins = ownedCoinsSuppliers.get(wallet).join();
-                                    Collection<String> coinsToBeScanned = new HashSet<>(ownedCoins);
-                                    coinsToBeScanned.addAll(coinsToBeAlwaysDisplayed);
-                                    //Cleaning up the coin collection
-                                    for (Map.Entry<String, Map<String, Map<String, Object>>> currentCoinValues : currentCoinRawValues.entrySet()) {
-                                        if (!coinsToBeScanned.contains(currentCoinValues.getKey()) && currentCoinValues.getValue().get(wallet.getName()) != null) {
-                                            currentCoinValues.getValue().remove(wallet.getName());
-                                        }
-                                    }
-                                    for (String coinName : coinsToBeScanned) {
-                                        Supplier<String> task = () -> {
-                                            Double unitPriceInDollar = wallet.getValueForCoin(coinName);
-                                            Double quantity = wallet.getQuantityForCoin(coinName);
-                                            Map<String, Map<String, Object>> allCoinValues = currentCoinRawValues.computeIfAbsent(coinName, key -> new ConcurrentHashMap<>());
-                                            Map<String, Object> coinValues = allCoinValues.computeIfAbsent(wallet.getName(), key -> new ConcurrentHashMap<>());
-                                            coinValues.put("unitPrice", unitPriceInDollar);
-                                            Optional.ofNullable(mainActivity).map(mA -> MainActivity.Model.setLastUpdateTime()).ifPresent(lUT -> coinValues.put("lastUpdate", lUT));
-                                            coinValues.put("quantity", quantity);
-                                            return (String)null;
-                                        };
-                                        Function<Throwable, String> exceptionHandler = exc -> {
-                                            String exceptionMessage = wallet.getName() + " exception while retrieving data for coin " + coinName + ": "+ exc.getMessage();
-                                            LoggerChain.getInstance().logError(exceptionMessage);
-                                            return exceptionMessage;
-                                        };
-                                        if (ownedCoins.contains(coinName)) {
-                                            innerTasks.add(
-                                                buildTask(task, exceptionHandler)
-                                            );
-                                        } else {
-                                            delayedTasks.put(task, exceptionHandler);
-                                        }
-                                    }
-                                    return innerTasks.stream().map(CompletableFuture::join).filter(Objects::nonNull).collect(Collectors.toList());
-                                },
-                                fragment.getExecutorService()
-                        )
-                );
+                CompletableFuture<Collection<String>> ownedCoinsSupplier = ownedCoinsSuppliers.get(wallet);
+                if (ownedCoinsSupplier == null || !ownedCoinsSupplier.isDone()) {
+                    if (ownedCoinsSupplier != null && suppliersWaitedFor.add(ownedCoinsSupplier)) {
+                        ownedCoinsSupplier.thenRun(() -> {
+                            suppliersWaitedFor.remove(ownedCoinsSupplier);
+                            looper.wakeUp();
+                        });
+                    }
+                    continue;
+                }
+                Collection<String> ownedCoins = ownedCoinsSupplier.join();
+                Collection<String> coinsToBeScanned = new HashSet<>(ownedCoins);
+                coinsToBeScanned.addAll(coinsToBeAlwaysDisplayed);
+                //Cleaning up the coin collection
+                for (Map.Entry<String, Map<String, Map<String, Object>>> currentCoinValues : currentCoinRawValues.entrySet()) {
+                    if (!coinsToBeScanned.contains(currentCoinValues.getKey()) && currentCoinValues.getValue().get(wallet.getName()) != null) {
+                        currentCoinValues.getValue().remove(wallet.getName());
+                    }
+                }
+                refreshCadence.retainAll(wallet, coinsToBeScanned);
+                List<String> coinsToBeRefreshed = refreshCadence.acquireDueCoins(wallet, coinsToBeScanned, now);
+                if (!coinsToBeRefreshed.isEmpty()) {
+                    ownedCoinsForWallet.put(wallet, ownedCoins);
+                    coinsToBeRefreshedForWallet.put(wallet, coinsToBeRefreshed);
+                }
             }
-            this.retrievingCoinValueTasks = retrievingCoinValueTasks;
-            retrievingCoinValueTasks.stream().forEach(CompletableFuture::join);
-            Collection<CompletableFuture<String>> tasks = new ArrayList<>();
-            for (Map.Entry<Supplier<String>, Function<Throwable, String>> task : delayedTasks.entrySet()) {
-                tasks.add(buildTask(task.getKey(), task.getValue()));
+            List<Wallet> walletsToBeRefreshed = new ArrayList<>(coinsToBeRefreshedForWallet.keySet());
+            walletsToBeRefreshed.sort(Comparator.comparingLong(wallet -> refreshCadence.getDeadline(wallet, coinsToBeRefreshedForWallet.get(wallet).get(0))));
+            Collection<CompletableFuture<Collection<String>>> retrievingCoinValueTasks = new ArrayList<>();
+            for (Wallet wallet : walletsToBeRefreshed) {
+                Collection<String> ownedCoins = ownedCoinsForWallet.get(wallet);
+                List<String> coinsToBeRefreshed = coinsToBeRefreshedForWallet.get(wallet);
+                CompletableFuture<Collection<String>> retrievingCoinValueTask = wallet.getValuesForCoinsAsync(coinsToBeRefreshed).exceptionally(exc -> {
+                    LoggerChain.getInstance().logError(wallet.getName() + " exception while retrieving coin values: " + unwrap(exc).getMessage());
+                    return new HashMap<>();
+                }).thenCompose(unitPrices -> {
+                    //The coin tasks are submitted by a single dependent in deadline order, since the lanes are FIFO
+                    List<CompletableFuture<String>> coinTasks = new ArrayList<>();
+                    for (String coinName : coinsToBeRefreshed) {
+                        Supplier<CompletableFuture<String>> task = () ->
+                            Optional.ofNullable(unitPrices.get(coinName)).map(CompletableFuture::completedFuture)
+                            .orElseGet(() -> wallet.getValueForCoinAsync(coinName))
+                            .thenCombine(wallet.getQuantityForCoinAsync(coinName), (unitPriceInDollar, quantity) -> {
+                                Map<String, Map<String, Object>> allCoinValues = currentCoinRawValues.computeIfAbsent(coinName, key -> new ConcurrentHashMap<>());
+                                Map<String, Object> coinValues = allCoinValues.computeIfAbsent(wallet.getName(), key -> new ConcurrentHashMap<>());
+                                coinValues.put("unitPrice", unitPriceInDollar);
+                                Optional.ofNullable(mainActivity).map(mA -> MainActivity.Model.setLastUpdateTime()).ifPresent(lUT -> coinValues.put("lastUpdate", lUT));
+                                coinValues.put("quantity", quantity);
+                                refreshCadence.onUpdated(wallet, coinName, unitPriceInDollar);
+                                return (String)null;
+                            });
+                        Function<Throwable, String> exceptionHandler = exc -> {
+                            String exceptionMessage = wallet.getName() + " exception while retrieving data for coin " + coinName + ": "+ unwrap(exc).getMessage();
+                            LoggerChain.getInstance().logError(exceptionMessage);
+                            refreshCadence.onFailed(wallet, coinName);
+                            return exceptionMessage;
+                        };
+                        coinTasks.add(
+                            buildTask(task, exceptionHandler, ownedCoins.contains(coinName) ?
+                                MainActivity.Engine.Lane.OWNED_COINS :
+                                MainActivity.Engine.Lane.WATCHLIST
+                            )
+                        );
+                    }
+                    return CompletableFuture.allOf(coinTasks.toArray(new CompletableFuture[coinTasks.size()])).thenApply(ignored ->
+                        coinTasks.stream().map(CompletableFuture::join).filter(Objects::nonNull).collect(Collectors.toList())
+                    );
+                });
+                retrievingCoinValueTask.whenComplete((exceptionMessages, exc) -> {
+                    if (exc != null) {
+                        //Releasing the coins whose task has not even been submitted
+                        refreshCadence.release(wallet, coinsToBeRefreshed);
+                    }
+                });
+                retrievingCoinValueTasks.add(retrievingCoinValueTask);
             }
-            tasks.stream().forEach(CompletableFuture::join);
+            if (!retrievingCoinValueTasks.isEmpty()) {
+                this.retrievingCoinValueTasks = retrievingCoinValueTasks;
+            }
+            //The next iteration starts when the earliest coin deadline expires, but not later than the base interval
+            //so that the coins that have just been bought are shown quickly
+            long waitingTime = Math.min(refreshCadence.getNextDeadline() - System.currentTimeMillis(), CoinRefreshCadence.DEFAULT_BASE_INTERVAL);
+            looper.atTheEndOfEveryIterationWaitFor(Math.max(waitingTime, intervalBetweenRequestGroups));
+            return true;
         }, fragment::getExecutorService)
                 .whenStarted(coinsToBeScannedRetriever::activate)
                 .whenKilled(coinsToBeScannedRetriever::kill)
-                .atTheEndOfEveryIterationWaitFor(fragment.getMainActivity().getLongValueFromAppPreferencesOrDefaultFromResources("intervalBetweenRequestGroups", R.integer.default_interval_between_request_groups_value))
                 .activate();
     }
 
@@ -402,11 +444,13 @@ class CoinViewManager {
         }
     }
 
-    private CompletableFuture<String> buildTask(Supplier<String> task, Function<Throwable, String> exceptionHandler) {
-        return CompletableFuture.supplyAsync(
-            task,
-            fragment.getExecutorService()
-        ).exceptionally(exceptionHandler);
+    //The wallet requests started by the task are queued in the same lane of the task
+    private CompletableFuture<String> buildTask(Supplier<CompletableFuture<String>> task, Function<Throwable, String> exceptionHandler, MainActivity.Engine.Lane lane) {
+        return CompletableFuture.supplyAsync(task, fragment.getExecutorService(lane)).thenCompose(Function.identity()).exceptionally(exceptionHandler);
+    }
+
+    private static Throwable unwrap(Throwable exc) {
+        return exc instanceof CompletionException && exc.getCause() != null ? exc.getCause() : exc;
     }
 
     private void launchOwnedCoinRetrievers(Map<Wallet, CompletableFuture<Collection<String>>> coinSuppliers) {
@@ -444,7 +488,7 @@ class CoinViewManager {
                     }
                 }
             }
-        }, fragment.getExecutorService());
+        }, fragment.getExecutorService(MainActivity.Engine.Lane.BACKGROUND));
     }
 
     @NonNull
@@ -468,6 +512,7 @@ class CoinViewManager {
     }
 
     public boolean refresh() {
+        Collection<CompletableFuture<Collection<String>>> retrievingCoinValueTasks = this.retrievingCoinValueTasks;
         if (retrievingCoinValueTasks == null) {
             return false;
         }
@@ -132,7 +132,21 @@ public class MainFragment extends Fragment {
             if (wallet.setApiKey(cryptoComApiKey) | wallet.setApiSecret(cryptoComApiSecret)) {
                 MainActivity.Model.isReadyToBeShown = false;
             }
-            wallet.setTimeOffset(getMainActivity().getLongValueFromAppPreferencesOrDefaultFromResources("cryptoComTimeOffset", R.integer.default_crypto_com_time_offset));
+            //The installations that already stored a time offset keep the local time until the mode is chosen explicitly
+            boolean timeOffsetStored = appPreferences.contains("cryptoComTimeOffset");
+            long currentTimeRetrievingMode = timeOffsetStored && !appPreferences.contains("cryptoComCurrentTimeRetrievingMode") ?
+                1L :
+                getMainActivity().getLongValueFromAppPreferencesOrDefaultFromResources("cryptoComCurrentTimeRetrievingMode", R.integer.default_crypto_com_current_time_retrieving_mode);
+            if (currentTimeRetrievingMode == 1) {
+                wallet.enableDefaultCurrentTimeMillisRetriever();
+                wallet.setTimeOffset(getMainActivity().getLongValueFromAppPreferencesOrDefaultFromResources("cryptoComTimeOffset", R.integer.default_crypto_com_time_offset));
+            } else if (currentTimeRetrievingMode == 2) {
+                wallet.enableCurrentTimeMillisFromCryptoComServersRetriever();
+                wallet.setTimeOffset(timeOffsetStored ?
+                    getMainActivity().getLongValueFromAppPreferencesOrDefaultFromResources("cryptoComTimeOffset", R.integer.default_crypto_com_time_offset) :
+                    0L
+                );
+            }
             wallets.add(wallet);
         }
         if (isStringNotEmpty(binanceApiKey) && isStringNotEmpty(binanceApiSecret) && binanceWalletEnabled) {
@@ -157,6 +171,7 @@ public class MainFragment extends Fragment {
             mainActivity.goToSettingsView();
             return;
         }
+        wallets.forEach(getMainActivity()::loadUnsupportedPairs);
         gitHubUsernameSupplier = CompletableFuture.supplyAsync(
             () -> {
                 if (isStringNotEmpty(appPreferences.getString("gitHubAuthorizationToken", null))) {
@@ -164,7 +179,7 @@ public class MainFragment extends Fragment {
                 }
                 return null;
             },
-            getExecutorService()
+            getExecutorService(MainActivity.Engine.Lane.BACKGROUND)
         ).exceptionally(exc -> {
             LoggerChain.getInstance().logError("Unable to retrieve GitHub username: " + exc.getMessage());
             return null;
@@ -180,6 +195,10 @@ public class MainFragment extends Fragment {
         return MainActivity.Engine.getExecutorService();
     }
 
+    ExecutorService getExecutorService(MainActivity.Engine.Lane lane) {
+        return MainActivity.Engine.getExecutorService(lane);
+    }
+
     public String getLastUpdateTimeAsString() {
         LocalDateTime lastUpdate = MainActivity.Model.getLastUpdateTime();
         try {
@@ -357,6 +376,7 @@ public class MainFragment extends Fragment {
     }
 
     synchronized void activate() {
+        activateStreams();
         if (this.coinViewManager == null) {
             coinViewManager = new CoinViewManager(this);
             coinViewManager.activate();
@@ -378,6 +398,47 @@ public class MainFragment extends Fragment {
             this.balanceUpdater = null;
             balanceUpdater.stop();
         }
+        stopStreams();
+    }
+
+    private void activateStreams() {
+        for (Wallet wallet : wallets) {
+            if (wallet instanceof BinanceWallet) {
+                if (appPreferences.getBoolean("binancePriceStreamEnabled", true)) {
+                    ((BinanceWallet)wallet).enablePriceStream();
+                } else {
+                    ((BinanceWallet)wallet).disablePriceStream();
+                }
+                if (appPreferences.getBoolean("binanceUserDataStreamEnabled", true)) {
+                    ((BinanceWallet)wallet).enableUserDataStream();
+                } else {
+                    ((BinanceWallet)wallet).disableUserDataStream();
+                }
+            } else if (wallet instanceof CryptoComWallet) {
+                if (appPreferences.getBoolean("cryptoComPriceStreamEnabled", true)) {
+                    ((CryptoComWallet)wallet).enablePriceStream();
+                } else {
+                    ((CryptoComWallet)wallet).disablePriceStream();
+                }
+                if (appPreferences.getBoolean("cryptoComUserDataStreamEnabled", true)) {
+                    ((CryptoComWallet)wallet).enableUserDataStream();
+                } else {
+                    ((CryptoComWallet)wallet).disableUserDataStream();
+                }
+            }
+        }
+    }
+
+    private void stopStreams() {
+        for (Wallet wallet : wallets) {
+            if (wallet instanceof BinanceWallet) {
+                ((BinanceWallet)wallet).disablePriceStream();
+                ((BinanceWallet)wallet).disableUserDataStream();
+            } else if (wallet instanceof CryptoComWallet) {
+                ((CryptoComWallet)wallet).disablePriceStream();
+                ((CryptoComWallet)wallet).disableUserDataStream();
+            }
+        }
     }
 
     void setHighlightedValue(TextView textView, DecimalFormat numberFormatter, Double newValue) {
@@ -1,20 +1,33 @@
 package org.rg.util;
 
-import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.function.BiPredicate;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 
 public class AsyncLooper {
+    private static final long REJECTED_ITERATION_RETRY_DELAY = 100L;
+    private static volatile ScheduledExecutorService scheduler;
 
     private final Supplier<Executor> executorSupplier;
     private final Runnable action;
     private Boolean isAlive;
+    private boolean running;
+    private boolean wakeUpRequested;
+    private boolean terminated;
+    private ScheduledFuture<?> nextIteration;
     private Runnable actionToBeExecutedAtStarting;
     private Runnable actionToBeExecutedWhenKilled;
-    private Long waitingTimeAtTheEndOfEveryIteration;
-    private Long waitingTimeAtTheStartOfEveryIteration;
+    private volatile long waitingTimeAtTheEndOfEveryIteration;
+    private volatile long waitingTimeAtTheStartOfEveryIteration;
+    private volatile long period;
+    private volatile long maxJitter;
     private BiPredicate<AsyncLooper, Throwable> excpetionHandler;
 
     public AsyncLooper(Runnable action, Supplier<Executor> executorSupplier) {
@@ -23,12 +36,20 @@ public class AsyncLooper {
     }
 
     public AsyncLooper(Supplier<Boolean> stoppableAction, Supplier<Executor> executorSupplier) {
-        this.action = () -> isAlive = stoppableAction.get();
+        this.action = () -> {
+            if (!stoppableAction.get()) {
+                kill();
+            }
+        };
         this.executorSupplier = executorSupplier;
     }
 
     public AsyncLooper(Predicate<AsyncLooper> stoppableAction, Supplier<Executor> executorSupplier) {
-        this.action = () -> isAlive = stoppableAction.test(this);
+        this.action = () -> {
+            if (!stoppableAction.test(this)) {
+                kill();
+            }
+        };
         this.executorSupplier = executorSupplier;
     }
 
@@ -38,35 +59,95 @@ public class AsyncLooper {
         } else {
             throw new IllegalStateException("Could not activate " + this + " twice");
         }
-        CompletableFuture.runAsync(() ->  {
+        running = true;
+        execute(() -> {
             if (actionToBeExecutedAtStarting != null) {
                 actionToBeExecutedAtStarting.run();
             }
-            while(isAlive) {
-                try {
-                    waitForIfNotNullAndGreaterThan0(waitingTimeAtTheStartOfEveryIteration);
-                    action.run();
-                    waitForIfNotNullAndGreaterThan0(waitingTimeAtTheEndOfEveryIteration);
-                } catch (Throwable exc) {
-                    isAlive = excpetionHandler != null && excpetionHandler.test(this, exc);
+            synchronized (this) {
+                running = false;
+                if (isAlive) {
+                    scheduleNextIteration(wakeUpRequested ? 0L : withJitter(waitingTimeAtTheStartOfEveryIteration));
+                } else {
+                    terminate();
                 }
             }
-            if (actionToBeExecutedWhenKilled != null) {
-                actionToBeExecutedWhenKilled.run();
-            }
-        }, executorSupplier.get());
+        });
         return this;
     }
 
-    private void waitForIfNotNullAndGreaterThan0(Long timeMillis) {
-        if (timeMillis != null && timeMillis > 0) {
-            synchronized (timeMillis) {
-                try {
-                    timeMillis.wait(timeMillis);
-                } catch (InterruptedException exc) {
-                    LoggerChain.getInstance().logError(exc.getMessage());
+    private void runIteration() {
+        synchronized (this) {
+            nextIteration = null;
+            if (!isAlive) {
+                terminate();
+                return;
+            }
+            running = true;
+            wakeUpRequested = false;
+        }
+        long startTime = System.currentTimeMillis();
+        try {
+            action.run();
+        } catch (Throwable exc) {
+            if (excpetionHandler == null || !excpetionHandler.test(this, exc)) {
+                kill();
+            }
+        }
+        synchronized (this) {
+            running = false;
+            if (!isAlive) {
+                terminate();
+            } else if (wakeUpRequested) {
+                scheduleNextIteration(0L);
+            } else if (period > 0) {
+                //Fixed rate: the iterations that have been missed because the action lasted too long are skipped
+                scheduleNextIteration(withJitter(Math.max(0L, startTime + period - System.currentTimeMillis())));
+            } else {
+                scheduleNextIteration(withJitter(waitingTimeAtTheEndOfEveryIteration + waitingTimeAtTheStartOfEveryIteration));
+            }
+        }
+    }
+
+    private void scheduleNextIteration(long delay) {
+        //The scheduler thread only hands the iteration over to the executor, so no thread is parked between the iterations
+        nextIteration = getScheduler().schedule(() -> {
+            try {
+                executorSupplier.get().execute(this::runIteration);
+            } catch (RejectedExecutionException exc) {
+                //The executor is being replaced
+                synchronized (this) {
+                    if (isAlive) {
+                        scheduleNextIteration(REJECTED_ITERATION_RETRY_DELAY);
+                    } else {
+                        nextIteration = null;
+                        terminate();
+                    }
                 }
             }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private long withJitter(long delay) {
+        long maxJitter = this.maxJitter;
+        return maxJitter > 0 ? delay + ThreadLocalRandom.current().nextLong(maxJitter + 1) : delay;
+    }
+
+    private void terminate() {
+        if (terminated) {
+            return;
+        }
+        terminated = true;
+        if (actionToBeExecutedWhenKilled != null) {
+            execute(actionToBeExecutedWhenKilled);
+        }
+    }
+
+    private void execute(Runnable runnable) {
+        try {
+            executorSupplier.get().execute(runnable);
+        } catch (RejectedExecutionException exc) {
+            getScheduler().schedule(() -> execute(runnable), REJECTED_ITERATION_RETRY_DELAY, TimeUnit.MILLISECONDS);
         }
     }
 
@@ -80,6 +161,18 @@ public class AsyncLooper {
         return this;
     }
 
+    //When set, the iterations start every 'millis' milliseconds regardless of how long they last, and the
+    //waiting time at the end of every iteration is ignored
+    public AsyncLooper atFixedRate(long millis) {
+        this.period = millis;
+        return this;
+    }
+
+    public AsyncLooper withJitterUpTo(long millis) {
+        this.maxJitter = millis;
+        return this;
+    }
+
     public AsyncLooper whenStarted(Runnable action) {
         this.actionToBeExecutedAtStarting = action;
         return this;
@@ -95,11 +188,42 @@ public class AsyncLooper {
         return this;
     }
 
+    public synchronized boolean wakeUp() {
+        if (!isAlive()) {
+            return false;
+        }
+        if (running) {
+            wakeUpRequested = true;
+        } else if (nextIteration != null && nextIteration.cancel(false)) {
+            scheduleNextIteration(0L);
+        }
+        return true;
+    }
+
     public synchronized void kill() {
         isAlive = false;
+        if (!running && nextIteration != null && nextIteration.cancel(false)) {
+            nextIteration = null;
+            terminate();
+        }
     }
 
-    public boolean isAlive() {
+    public synchronized boolean isAlive() {
         return isAlive != null && isAlive;
     }
-}
\ No newline at end of file
+
+    private static ScheduledExecutorService getScheduler() {
+        if (scheduler == null) {
+            synchronized (AsyncLooper.class) {
+                if (scheduler == null) {
+                    scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                        Thread thread = new Thread(runnable, "Async looper scheduler");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                }
+            }
+        }
+        return scheduler;
+    }
+}
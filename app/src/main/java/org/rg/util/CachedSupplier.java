@@ -0,0 +1,55 @@
+package org.rg.util;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+public class CachedSupplier<T> implements Supplier<T> {
+    private final RequestCoalescer requestCoalescer;
+    private final String key;
+    private final Supplier<T> loader;
+    private final Supplier<CompletableFuture<T>> asyncLoader;
+    private volatile long timeToLive;
+
+    public CachedSupplier(Supplier<T> loader, long timeToLive) {
+        this(new RequestCoalescer(), CachedSupplier.class.getName(), loader, timeToLive);
+    }
+
+    public CachedSupplier(RequestCoalescer requestCoalescer, String key, Supplier<T> loader, long timeToLive) {
+        this(requestCoalescer, key, loader, null, timeToLive);
+    }
+
+    //The asynchronous loader is used by getAsync and shares the cached value and the call in flight with the loader
+    public CachedSupplier(RequestCoalescer requestCoalescer, String key, Supplier<T> loader, Supplier<CompletableFuture<T>> asyncLoader, long timeToLive) {
+        this.requestCoalescer = requestCoalescer;
+        this.key = key;
+        this.loader = loader;
+        this.asyncLoader = asyncLoader != null ? asyncLoader : () -> CompletableFuture.supplyAsync(loader);
+        this.timeToLive = timeToLive;
+    }
+
+    @Override
+    public T get() {
+        return requestCoalescer.execute(key, timeToLive, loader);
+    }
+
+    public CompletableFuture<T> getAsync() {
+        return requestCoalescer.executeAsync(key, timeToLive, asyncLoader);
+    }
+
+    public T getIfPresent() {
+        return requestCoalescer.getIfPresent(key);
+    }
+
+    public void invalidate() {
+        requestCoalescer.invalidate(key);
+    }
+
+    public long getTimeToLive() {
+        return timeToLive;
+    }
+
+    public CachedSupplier<T> setTimeToLive(long timeToLive) {
+        this.timeToLive = timeToLive;
+        return this;
+    }
+}
@@ -0,0 +1,253 @@
+package org.rg.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.io.SequenceInputStream;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.zip.CRC32;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+public class ContentDecoder {
+    public static final String ACCEPTED_ENCODINGS = "gzip, deflate";
+    private static final int MAX_POOLED_INFLATERS = 8;
+    private static final int GZIP_MAGIC = 0x8b1f;
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+    private static final Queue<Inflater> rawInflaters = new ConcurrentLinkedQueue<>();
+    private static final Queue<Inflater> zlibInflaters = new ConcurrentLinkedQueue<>();
+
+    private ContentDecoder() {}
+
+    public static InputStream decode(InputStream body, String contentEncoding, Listener listener) throws IOException {
+        CountingInputStream wireStream = new CountingInputStream(body, null);
+        InputStream decodedStream = wireStream;
+        PushbackInputStream encodedStream = new PushbackInputStream(wireStream);
+        int firstByte = encodedStream.read();
+        if (firstByte == -1) {
+            contentEncoding = null;
+        } else {
+            encodedStream.unread(firstByte);
+            decodedStream = encodedStream;
+        }
+        if (contentEncoding != null) {
+            contentEncoding = contentEncoding.trim().toLowerCase();
+            if (contentEncoding.equals("gzip") || contentEncoding.equals("x-gzip")) {
+                skipGzipHeader(encodedStream);
+                decodedStream = new GzipInflaterInputStream(encodedStream);
+            } else if (contentEncoding.equals("deflate")) {
+                decodedStream = new PooledInflaterInputStream(encodedStream, zlibInflaters, false);
+            }
+        }
+        return new CountingInputStream(decodedStream, decodedBytes -> listener.onCompleted(wireStream.count, decodedBytes));
+    }
+
+    public static byte[] readAllBytes(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            outputStream.write(buffer, 0, read);
+        }
+        return outputStream.toByteArray();
+    }
+
+    private static void skipGzipHeader(InputStream inputStream) throws IOException {
+        if (readUnsignedShort(inputStream) != GZIP_MAGIC) {
+            throw new ZipException("Not in GZIP format");
+        }
+        if (readUnsignedByte(inputStream) != 8) {
+            throw new ZipException("Unsupported compression method");
+        }
+        int flags = readUnsignedByte(inputStream);
+        //Modification time, extra flags and operating system
+        for (int i = 0; i < 6; i++) {
+            readUnsignedByte(inputStream);
+        }
+        if ((flags & FEXTRA) == FEXTRA) {
+            for (int length = readUnsignedShort(inputStream); length > 0; length--) {
+                readUnsignedByte(inputStream);
+            }
+        }
+        if ((flags & FNAME) == FNAME) {
+            while (readUnsignedByte(inputStream) != 0);
+        }
+        if ((flags & FCOMMENT) == FCOMMENT) {
+            while (readUnsignedByte(inputStream) != 0);
+        }
+        if ((flags & FHCRC) == FHCRC) {
+            readUnsignedShort(inputStream);
+        }
+    }
+
+    private static long readUnsignedInt(InputStream inputStream) throws IOException {
+        return readUnsignedShort(inputStream) | ((long)readUnsignedShort(inputStream) << 16);
+    }
+
+    private static int readUnsignedShort(InputStream inputStream) throws IOException {
+        return readUnsignedByte(inputStream) | (readUnsignedByte(inputStream) << 8);
+    }
+
+    private static int readUnsignedByte(InputStream inputStream) throws IOException {
+        int value = inputStream.read();
+        if (value == -1) {
+            throw new EOFException("Unexpected end of GZIP stream");
+        }
+        return value;
+    }
+
+    @FunctionalInterface
+    public static interface Listener {
+
+        public void onCompleted(long wireBytes, long decodedBytes);
+
+    }
+
+    private static class PooledInflaterInputStream extends InflaterInputStream {
+        private final Queue<Inflater> pool;
+        private boolean closed;
+
+        private PooledInflaterInputStream(InputStream inputStream, Queue<Inflater> pool, boolean nowrap) {
+            super(inputStream, acquire(pool, nowrap), 8192);
+            this.pool = pool;
+        }
+
+        private static Inflater acquire(Queue<Inflater> pool, boolean nowrap) {
+            Inflater inflater = pool.poll();
+            return inflater != null ? inflater : new Inflater(nowrap);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                in.close();
+            } finally {
+                //The inflater is not owned by InflaterInputStream when passed to the constructor, so we recycle it
+                inf.reset();
+                if (pool.size() < MAX_POOLED_INFLATERS) {
+                    pool.offer(inf);
+                } else {
+                    inf.end();
+                }
+            }
+        }
+    }
+
+    //The raw inflater does not read the gzip trailer: it is checked against the decoded data as soon as the
+    //inflater finishes, so that it is also counted among the received bytes when the reader stops before the end
+    private static class GzipInflaterInputStream extends PooledInflaterInputStream {
+        private final CRC32 crc;
+        private boolean trailerChecked;
+
+        private GzipInflaterInputStream(InputStream inputStream) {
+            super(inputStream, rawInflaters, true);
+            this.crc = new CRC32();
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (trailerChecked) {
+                return -1;
+            }
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                crc.update(buffer, offset, read);
+            }
+            if (read == -1 || inf.finished()) {
+                checkTrailer();
+            }
+            return read;
+        }
+
+        private void checkTrailer() throws IOException {
+            trailerChecked = true;
+            int remaining = inf.getRemaining();
+            InputStream trailerStream = remaining > 0 ?
+                new SequenceInputStream(new ByteArrayInputStream(buf, len - remaining, remaining), in) : in;
+            if (readUnsignedInt(trailerStream) != crc.getValue()) {
+                throw new ZipException("Corrupt GZIP trailer: CRC mismatch");
+            }
+            if (readUnsignedInt(trailerStream) != (inf.getBytesWritten() & 0xffffffffL)) {
+                throw new ZipException("Corrupt GZIP trailer: size mismatch");
+            }
+        }
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+        private final CompletionListener completionListener;
+        private long count;
+        private boolean completed;
+
+        private CountingInputStream(InputStream inputStream, CompletionListener completionListener) {
+            super(inputStream);
+            this.completionListener = completionListener;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int value = super.read();
+            if (value != -1) {
+                count++;
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                complete();
+            }
+        }
+
+        private void complete() {
+            if (!completed && completionListener != null) {
+                completed = true;
+                completionListener.onCompleted(count);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private static interface CompletionListener {
+
+        public void onCompleted(long count);
+
+    }
+
+}
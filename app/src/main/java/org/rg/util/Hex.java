@@ -11,6 +11,11 @@ public class Hex {
 		return new String(encode(data, toLowerCase ? DIGITS_LOWER : DIGITS_UPPER));
 	}
 
+	public static int encode(final byte[] data, final int dataOffset, final int dataLen, final boolean toLowerCase, final char[] out, final int outOffset) {
+		encode(data, dataOffset, dataLen, toLowerCase ? DIGITS_LOWER : DIGITS_UPPER, out, outOffset);
+		return dataLen << 1;
+	}
+
 	private static char[] encode(final byte[] data, final char[] toDigits) {
 		final int l = data.length;
 		final char[] out = new char[l << 1];
@@ -0,0 +1,49 @@
+package org.rg.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.HttpStatusCodeException;
+
+public interface HttpTransport {
+
+    public <T> T execute(URI uri, HttpMethod method, HttpHeaders headers, byte[] body, ResponseReader<T> responseReader);
+
+    public <T> CompletableFuture<T> executeAsync(URI uri, HttpMethod method, HttpHeaders headers, byte[] body, ResponseReader<T> responseReader);
+
+    public RateLimiter getRateLimiter();
+
+    public static HttpStatusCodeException toException(int statusCode, String statusText, byte[] body) {
+        String message = "Http response error: " + statusCode + " (" + statusText + "). Body: " + new String(body, StandardCharsets.UTF_8);
+        HttpStatus status = HttpStatus.valueOf(statusCode);
+        if (statusCode >= 400 && statusCode < 500) {
+            //Client errors are often expected (e.g. an unsupported symbol): the caller decides whether to report them
+            LoggerChain.getInstance().logDebug(message);
+            return new HttpClientErrorException(status, statusText, body, StandardCharsets.UTF_8);
+        }
+        LoggerChain.getInstance().logError(message);
+        return new HttpServerErrorException(status, statusText, body, StandardCharsets.UTF_8);
+    }
+
+    @FunctionalInterface
+    public static interface ResponseReader<T> {
+
+        public T read(InputStream body) throws IOException;
+
+        //The transports call this one, so that the readers that need the response headers can override it
+        public default T read(InputStream body, Function<String, String> headerValueSupplier) throws IOException {
+            return read(body);
+        }
+
+    }
+
+}
@@ -0,0 +1,181 @@
+package org.rg.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.client.ResourceAccessException;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Dispatcher;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+public class OkHttpTransport implements HttpTransport {
+    private static final byte[] EMPTY_BODY = new byte[0];
+    private final OkHttpClient client;
+    private final RateLimiter rateLimiter;
+    private final TrafficMeter trafficMeter;
+
+    public OkHttpTransport(RateLimiter rateLimiter) {
+        this(buildDefaultClient(), rateLimiter, null);
+    }
+
+    public OkHttpTransport(OkHttpClient client, RateLimiter rateLimiter, TrafficMeter trafficMeter) {
+        this.client = client;
+        this.rateLimiter = rateLimiter;
+        this.trafficMeter = trafficMeter;
+    }
+
+    @Override
+    public <T> T execute(URI uri, HttpMethod method, HttpHeaders headers, byte[] body, ResponseReader<T> responseReader) {
+        Request request = buildRequest(uri, method, headers, body);
+        acquire(uri);
+        try (Response response = client.newCall(request).execute()) {
+            return read(uri, response, responseReader);
+        } catch (IOException exc) {
+            throw new ResourceAccessException("I/O error: " + exc.getMessage(), exc);
+        }
+    }
+
+    @Override
+    public <T> CompletableFuture<T> executeAsync(URI uri, HttpMethod method, HttpHeaders headers, byte[] body, ResponseReader<T> responseReader) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Request request;
+        try {
+            request = buildRequest(uri, method, headers, body);
+        } catch (Throwable exc) {
+            result.completeExceptionally(exc);
+            return result;
+        }
+        //While the rate limit is reached the request is delayed by the rate limiter scheduler instead of
+        //parking the calling thread
+        acquireAsync(uri).whenComplete((ignored, exc) -> {
+            if (exc != null) {
+                result.completeExceptionally(exc);
+            } else if (!result.isDone()) {
+                enqueue(client.newCall(request), uri, responseReader, result);
+            }
+        });
+        return result;
+    }
+
+    private <T> void enqueue(Call call, URI uri, ResponseReader<T> responseReader, CompletableFuture<T> result) {
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException exc) {
+                result.completeExceptionally(new ResourceAccessException("I/O error: " + exc.getMessage(), exc));
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                T value;
+                try {
+                    value = readAndClose(uri, response, responseReader);
+                } catch (Throwable exc) {
+                    result.completeExceptionally(exc);
+                    return;
+                }
+                result.complete(value);
+            }
+        });
+        result.whenComplete((value, exc) -> {
+            if (result.isCancelled()) {
+                call.cancel();
+            }
+        });
+    }
+
+    @Override
+    public RateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    private void acquire(URI uri) {
+        if (rateLimiter != null) {
+            rateLimiter.acquire(uri);
+        }
+    }
+
+    private CompletableFuture<Void> acquireAsync(URI uri) {
+        return rateLimiter != null ? rateLimiter.acquireAsync(uri) : CompletableFuture.completedFuture(null);
+    }
+
+    //The response is closed before the result is completed, so the connection goes back to the pool before
+    //the dependent stages run
+    private <T> T readAndClose(URI uri, Response response, ResponseReader<T> responseReader) throws IOException {
+        try {
+            return read(uri, response, responseReader);
+        } finally {
+            response.close();
+        }
+    }
+
+    private <T> T read(URI uri, Response response, ResponseReader<T> responseReader) throws IOException {
+        if (rateLimiter != null) {
+            rateLimiter.update(uri, response.code(), response::header);
+        }
+        ResponseBody body = response.body();
+        if (body == null) {
+            if (!response.isSuccessful()) {
+                throw HttpTransport.toException(response.code(), response.message(), EMPTY_BODY);
+            }
+            return null;
+        }
+        //Since the Accept-Encoding header is set by us OkHttp does not decompress the body: this lets
+        //us count the bytes received on the wire and recycle the inflaters
+        try (InputStream bodyStream = ContentDecoder.decode(body.byteStream(), response.header("Content-Encoding"), (wireBytes, decodedBytes) -> {
+            if (trafficMeter != null) {
+                trafficMeter.record(uri.getHost(), uri.getPath(), wireBytes, decodedBytes);
+            }
+        })) {
+            if (!response.isSuccessful()) {
+                throw HttpTransport.toException(response.code(), response.message(), ContentDecoder.readAllBytes(bodyStream));
+            }
+            return responseReader.read(bodyStream, response::header);
+        }
+    }
+
+    private Request buildRequest(URI uri, HttpMethod method, HttpHeaders headers, byte[] body) {
+        Request.Builder requestBuilder = new Request.Builder().url(uri.toString())
+            .header("Accept-Encoding", ContentDecoder.ACCEPTED_ENCODINGS);
+        if (headers != null) {
+            for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+                requestBuilder.removeHeader(header.getKey());
+                for (String value : header.getValue()) {
+                    requestBuilder.addHeader(header.getKey(), value);
+                }
+            }
+        }
+        RequestBody requestBody = null;
+        if (body != null || method == HttpMethod.POST || method == HttpMethod.PUT) {
+            MediaType contentType = headers != null && headers.getContentType() != null ?
+                MediaType.parse(headers.getContentType().toString()) : null;
+            requestBody = RequestBody.create(body != null ? body : EMPTY_BODY, contentType);
+        }
+        return requestBuilder.method(method.name(), requestBody).build();
+    }
+
+    private static OkHttpClient buildDefaultClient() {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(64);
+        dispatcher.setMaxRequestsPerHost(32);
+        return new OkHttpClient.Builder()
+            .dispatcher(dispatcher)
+            .connectTimeout(10, TimeUnit.SECONDS)
+            .readTimeout(30, TimeUnit.SECONDS)
+            .build();
+    }
+
+}
@@ -0,0 +1,193 @@
+package org.rg.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class PriorityLaneExecutor {
+    private static final Comparator<Runnable> TASK_COMPARATOR = (taskOne, taskTwo) -> {
+        Task firstTask = (Task)taskOne;
+        Task secondTask = (Task)taskTwo;
+        int result = Integer.compare(firstTask.lane.priority, secondTask.lane.priority);
+        return result != 0 ? result : Long.compare(firstTask.sequence, secondTask.sequence);
+    };
+    private final ThreadPoolExecutor threadPool;
+    private final List<Lane> lanes;
+    private final AtomicLong sequence;
+    private final ThreadLocal<Lane> currentLane;
+
+    //The lanes are listed from the highest priority to the lowest one
+    public PriorityLaneExecutor(String name, int poolSize, String... laneNames) {
+        if (laneNames.length == 0) {
+            throw new IllegalArgumentException("At least one lane is required");
+        }
+        AtomicInteger threadCounter = new AtomicInteger();
+        this.threadPool = new ThreadPoolExecutor(
+            poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+            new PriorityBlockingQueue<>(64, TASK_COMPARATOR),
+            runnable -> new Thread(runnable, name + " - worker " + threadCounter.incrementAndGet())
+        );
+        List<Lane> lanes = new ArrayList<>();
+        for (int i = 0; i < laneNames.length; i++) {
+            lanes.add(new Lane(laneNames[i], i));
+        }
+        this.lanes = Collections.unmodifiableList(lanes);
+        this.sequence = new AtomicLong();
+        this.currentLane = new ThreadLocal<>();
+    }
+
+    public ExecutorService getLane(int priority) {
+        return lanes.get(priority);
+    }
+
+    //Returns an executor that runs the tasks in the lane of the task that submits them, so that the work
+    //started by a low priority task does not overtake the high priority one
+    public ExecutorService getCallerLane(int defaultPriority) {
+        Lane defaultLane = lanes.get(defaultPriority);
+        return new LaneView() {
+            @Override
+            public void execute(Runnable command) {
+                Lane lane = currentLane.get();
+                (lane != null ? lane : defaultLane).execute(command);
+            }
+        };
+    }
+
+    //Running tasks and queued ones are preserved: exceeding threads exit once they become idle
+    public synchronized void setPoolSize(int poolSize) {
+        if (poolSize > threadPool.getMaximumPoolSize()) {
+            threadPool.setMaximumPoolSize(poolSize);
+            threadPool.setCorePoolSize(poolSize);
+        } else if (poolSize < threadPool.getMaximumPoolSize()) {
+            threadPool.setCorePoolSize(poolSize);
+            threadPool.setMaximumPoolSize(poolSize);
+        }
+    }
+
+    public int getPoolSize() {
+        return threadPool.getCorePoolSize();
+    }
+
+    public Map<String, Map<String, Long>> getMetrics() {
+        Map<String, Map<String, Long>> metrics = new LinkedHashMap<>();
+        Map<String, Long> threadPoolMetrics = new LinkedHashMap<>();
+        threadPoolMetrics.put("poolSize", (long)threadPool.getCorePoolSize());
+        threadPoolMetrics.put("threads", (long)threadPool.getPoolSize());
+        threadPoolMetrics.put("activeThreads", (long)threadPool.getActiveCount());
+        threadPoolMetrics.put("largestPoolSize", (long)threadPool.getLargestPoolSize());
+        threadPoolMetrics.put("queuedTasks", (long)threadPool.getQueue().size());
+        threadPoolMetrics.put("completedTasks", threadPool.getCompletedTaskCount());
+        metrics.put("threadPool", threadPoolMetrics);
+        for (Lane lane : lanes) {
+            metrics.put(lane.name, lane.getMetrics());
+        }
+        return metrics;
+    }
+
+    public void shutdown() {
+        threadPool.shutdown();
+    }
+
+    private abstract class LaneView extends AbstractExecutorService {
+
+        @Override
+        public void shutdown() {
+            throw new UnsupportedOperationException("A lane cannot be shut down: shut down the whole executor instead");
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            throw new UnsupportedOperationException("A lane cannot be shut down: shut down the whole executor instead");
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return threadPool.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return threadPool.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return threadPool.awaitTermination(timeout, unit);
+        }
+    }
+
+    private class Lane extends LaneView {
+        private final String name;
+        private final int priority;
+        private final AtomicLong queuedTasks;
+        private final AtomicLong startedTasks;
+        private final AtomicLong totalWaitTime;
+
+        private Lane(String name, int priority) {
+            this.name = name;
+            this.priority = priority;
+            this.queuedTasks = new AtomicLong();
+            this.startedTasks = new AtomicLong();
+            this.totalWaitTime = new AtomicLong();
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            queuedTasks.incrementAndGet();
+            try {
+                threadPool.execute(new Task(this, sequence.incrementAndGet(), command));
+            } catch (RejectedExecutionException exc) {
+                queuedTasks.decrementAndGet();
+                throw exc;
+            }
+        }
+
+        private Map<String, Long> getMetrics() {
+            Map<String, Long> metrics = new LinkedHashMap<>();
+            metrics.put("priority", (long)priority);
+            metrics.put("queuedTasks", queuedTasks.get());
+            metrics.put("startedTasks", startedTasks.get());
+            metrics.put("totalWaitTime", totalWaitTime.get());
+            return metrics;
+        }
+    }
+
+    private class Task implements Runnable {
+        private final Lane lane;
+        private final long sequence;
+        private final Runnable command;
+        private final long creationTime;
+
+        private Task(Lane lane, long sequence, Runnable command) {
+            this.lane = lane;
+            this.sequence = sequence;
+            this.command = command;
+            this.creationTime = System.currentTimeMillis();
+        }
+
+        @Override
+        public void run() {
+            lane.queuedTasks.decrementAndGet();
+            lane.startedTasks.incrementAndGet();
+            lane.totalWaitTime.addAndGet(System.currentTimeMillis() - creationTime);
+            Lane previousLane = currentLane.get();
+            currentLane.set(lane);
+            try {
+                command.run();
+            } finally {
+                currentLane.set(previousLane);
+            }
+        }
+    }
+}
@@ -0,0 +1,365 @@
+package org.rg.util;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.client.HttpClientErrorException;
+
+public class RateLimiter implements ClientHttpRequestInterceptor {
+    private static volatile ScheduledExecutorService scheduler;
+    private final List<Bucket> buckets;
+    private volatile double safetyMargin;
+    private volatile long maxWaitTime;
+
+    public RateLimiter() {
+        this.buckets = new CopyOnWriteArrayList<>();
+        this.safetyMargin = 0.9D;
+        this.maxWaitTime = 30000L;
+    }
+
+    public Bucket registerBucket(String host, String pathPrefix, long limit, long window) {
+        Bucket bucket = getBucket(host, pathPrefix);
+        if (bucket != null) {
+            bucket.setLimit(limit, window);
+            return bucket;
+        }
+        synchronized (buckets) {
+            bucket = getBucket(host, pathPrefix);
+            if (bucket == null) {
+                bucket = new Bucket(host, pathPrefix, limit, window);
+                //Most specific path prefixes first
+                int index = 0;
+                while (index < buckets.size() && buckets.get(index).pathPrefix.length() >= pathPrefix.length()) {
+                    index++;
+                }
+                buckets.add(index, bucket);
+            } else {
+                bucket.setLimit(limit, window);
+            }
+            return bucket;
+        }
+    }
+
+    public RateLimiter setSafetyMargin(double safetyMargin) {
+        this.safetyMargin = safetyMargin;
+        return this;
+    }
+
+    public RateLimiter setMaxWaitTime(long maxWaitTime) {
+        this.maxWaitTime = maxWaitTime;
+        return this;
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+        URI uri = request.getURI();
+        acquire(uri);
+        ClientHttpResponse response = execution.execute(request, body);
+        update(uri, response.getRawStatusCode(), response.getHeaders()::getFirst);
+        return response;
+    }
+
+    public void acquire(URI uri) {
+        Bucket bucket = findBucket(uri);
+        if (bucket != null) {
+            bucket.acquire(bucket.getWeight(uri));
+        }
+    }
+
+    //Completes when the request can be sent: the waiting is scheduled, so no thread is parked meanwhile
+    public CompletableFuture<Void> acquireAsync(URI uri) {
+        Bucket bucket = findBucket(uri);
+        if (bucket == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        bucket.acquireAsync(bucket.getWeight(uri), result);
+        return result;
+    }
+
+    public void update(URI uri, int statusCode, Function<String, String> headerValueSupplier) {
+        Bucket bucket = findBucket(uri);
+        if (bucket != null) {
+            bucket.update(statusCode, headerValueSupplier);
+        }
+    }
+
+    public Map<String, Map<String, Long>> getMetrics() {
+        Map<String, Map<String, Long>> metrics = new LinkedHashMap<>();
+        for (Bucket bucket : buckets) {
+            metrics.put(bucket.getName(), bucket.getMetrics());
+        }
+        return metrics;
+    }
+
+    //Returns the share of the request budget currently used on the given host: 0 means idle, 1 means
+    //that requests are being throttled or suspended
+    public double getUsage(String host) {
+        double usage = 0D;
+        for (Bucket bucket : buckets) {
+            if (bucket.host.equals(host)) {
+                usage = Math.max(usage, bucket.getUsage());
+            }
+        }
+        return usage;
+    }
+
+    private Bucket getBucket(String host, String pathPrefix) {
+        for (Bucket bucket : buckets) {
+            if (bucket.host.equals(host) && bucket.pathPrefix.equals(pathPrefix)) {
+                return bucket;
+            }
+        }
+        return null;
+    }
+
+    private Bucket findBucket(URI uri) {
+        String host = uri.getHost();
+        String path = uri.getPath() != null ? uri.getPath() : "";
+        for (Bucket bucket : buckets) {
+            if (bucket.host.equals(host) && path.startsWith(bucket.pathPrefix)) {
+                return bucket;
+            }
+        }
+        return null;
+    }
+
+    private static ScheduledExecutorService getScheduler() {
+        if (scheduler == null) {
+            synchronized (RateLimiter.class) {
+                if (scheduler == null) {
+                    scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                        Thread thread = new Thread(runnable, "Rate limiter scheduler");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                }
+            }
+        }
+        return scheduler;
+    }
+
+    public class Bucket {
+        private final String host;
+        private final String pathPrefix;
+        private final Map<String, Integer> weights;
+        private int defaultWeight;
+        private String usedWeightHeader;
+        private long limit;
+        private long window;
+        private double tokens;
+        private long lastRefillTime;
+        private long blockedUntil;
+        private long lastReportedUsedWeight;
+        private final AtomicLong requests;
+        private final AtomicLong throttledRequests;
+        private final AtomicLong rejectedRequests;
+        private final AtomicLong totalWaitTime;
+        private final AtomicLong retryAfterResponses;
+
+        private Bucket(String host, String pathPrefix, long limit, long window) {
+            this.host = host;
+            this.pathPrefix = pathPrefix;
+            this.weights = new LinkedHashMap<>();
+            this.defaultWeight = 1;
+            this.limit = limit;
+            this.window = window;
+            this.tokens = getCapacity();
+            this.lastRefillTime = System.currentTimeMillis();
+            this.requests = new AtomicLong();
+            this.throttledRequests = new AtomicLong();
+            this.rejectedRequests = new AtomicLong();
+            this.totalWaitTime = new AtomicLong();
+            this.retryAfterResponses = new AtomicLong();
+        }
+
+        public synchronized Bucket setWeight(String path, int weight) {
+            weights.put(path, weight);
+            return this;
+        }
+
+        public synchronized Bucket setDefaultWeight(int defaultWeight) {
+            this.defaultWeight = defaultWeight;
+            return this;
+        }
+
+        public synchronized Bucket setUsedWeightHeader(String usedWeightHeader) {
+            this.usedWeightHeader = usedWeightHeader;
+            return this;
+        }
+
+        private synchronized void setLimit(long limit, long window) {
+            this.limit = limit;
+            this.window = window;
+            this.tokens = Math.min(tokens, getCapacity());
+        }
+
+        public String getName() {
+            return host + pathPrefix;
+        }
+
+        private synchronized int getWeight(URI uri) {
+            Integer weight = weights.get(uri.getPath());
+            return weight != null ? weight : defaultWeight;
+        }
+
+        private double getCapacity() {
+            return limit * safetyMargin;
+        }
+
+        private void refill(long now) {
+            if (now > lastRefillTime) {
+                tokens = Math.min(getCapacity(), tokens + ((now - lastRefillTime) * (double)limit / window));
+                lastRefillTime = now;
+            }
+        }
+
+        private void acquire(int weight) {
+            requests.incrementAndGet();
+            long startTime = System.currentTimeMillis();
+            boolean throttled = false;
+            long waitTime;
+            while ((waitTime = tryAcquire(weight)) > 0) {
+                onThrottled(startTime, waitTime, throttled);
+                throttled = true;
+                try {
+                    Thread.sleep(waitTime);
+                } catch (InterruptedException exc) {
+                    Thread.currentThread().interrupt();
+                    Throwables.sneakyThrow(exc);
+                }
+            }
+            if (throttled) {
+                totalWaitTime.addAndGet(System.currentTimeMillis() - startTime);
+            }
+        }
+
+        private void acquireAsync(int weight, CompletableFuture<Void> result) {
+            requests.incrementAndGet();
+            acquireAsync(weight, System.currentTimeMillis(), false, result);
+        }
+
+        private void acquireAsync(int weight, long startTime, boolean throttled, CompletableFuture<Void> result) {
+            if (result.isDone()) {
+                return;
+            }
+            try {
+                long waitTime = tryAcquire(weight);
+                if (waitTime > 0) {
+                    onThrottled(startTime, waitTime, throttled);
+                    getScheduler().schedule(() -> acquireAsync(weight, startTime, true, result), waitTime, TimeUnit.MILLISECONDS);
+                    return;
+                }
+                if (throttled) {
+                    totalWaitTime.addAndGet(System.currentTimeMillis() - startTime);
+                }
+                result.complete(null);
+            } catch (Throwable exc) {
+                result.completeExceptionally(exc);
+            }
+        }
+
+        //Takes the tokens and returns 0 if they are available, otherwise returns the time to wait for them
+        private synchronized long tryAcquire(int weight) {
+            long now = System.currentTimeMillis();
+            refill(now);
+            if (now >= blockedUntil && tokens >= Math.min(weight, getCapacity())) {
+                tokens -= weight;
+                return 0L;
+            }
+            return Math.max(
+                1L,
+                Math.max(
+                    blockedUntil - now,
+                    (long)Math.ceil((Math.min(weight, getCapacity()) - tokens) * window / limit)
+                )
+            );
+        }
+
+        private void onThrottled(long startTime, long waitTime, boolean alreadyThrottled) {
+            if (System.currentTimeMillis() + waitTime - startTime > maxWaitTime) {
+                rejectedRequests.incrementAndGet();
+                throw new HttpClientErrorException(HttpStatus.TOO_MANY_REQUESTS, "Request rate limit reached for " + getName());
+            }
+            if (!alreadyThrottled) {
+                throttledRequests.incrementAndGet();
+                LoggerChain.getInstance().logDebug("Request to " + getName() + " throttled for " + waitTime + " milliseconds");
+            }
+        }
+
+        private void update(int statusCode, Function<String, String> headerValueSupplier) {
+            String usedWeightHeader = this.usedWeightHeader;
+            String usedWeight = usedWeightHeader != null ? headerValueSupplier.apply(usedWeightHeader) : null;
+            String retryAfter = statusCode == 429 || statusCode == 418 ? headerValueSupplier.apply("Retry-After") : null;
+            synchronized (this) {
+                long now = System.currentTimeMillis();
+                refill(now);
+                if (usedWeight != null) {
+                    try {
+                        lastReportedUsedWeight = Long.parseLong(usedWeight.trim());
+                        //The server counter is the authoritative one
+                        tokens = Math.min(tokens, getCapacity() - lastReportedUsedWeight);
+                    } catch (NumberFormatException exc) {
+                        LoggerChain.getInstance().logDebug("Invalid " + usedWeightHeader + " header value: " + usedWeight);
+                    }
+                }
+                if (statusCode == 429 || statusCode == 418) {
+                    retryAfterResponses.incrementAndGet();
+                    long delay = window;
+                    if (retryAfter != null) {
+                        try {
+                            delay = Long.parseLong(retryAfter.trim()) * 1000L;
+                        } catch (NumberFormatException exc) {
+                            LoggerChain.getInstance().logDebug("Invalid Retry-After header value: " + retryAfter);
+                        }
+                    }
+                    blockedUntil = Math.max(blockedUntil, now + delay);
+                    tokens = Math.min(tokens, 0D);
+                    LoggerChain.getInstance().logError("Request rate limit exceeded for " + getName() + ": requests suspended for " + delay + " milliseconds");
+                }
+            }
+        }
+
+        private synchronized double getUsage() {
+            long now = System.currentTimeMillis();
+            if (now < blockedUntil) {
+                return 1D;
+            }
+            refill(now);
+            return Math.max(0D, Math.min(1D, 1D - (tokens / getCapacity())));
+        }
+
+        private Map<String, Long> getMetrics() {
+            Map<String, Long> metrics = new LinkedHashMap<>();
+            synchronized (this) {
+                refill(System.currentTimeMillis());
+                metrics.put("limit", limit);
+                metrics.put("window", window);
+                metrics.put("availableWeight", (long)tokens);
+                metrics.put("lastReportedUsedWeight", lastReportedUsedWeight);
+                metrics.put("blockedUntil", blockedUntil);
+            }
+            metrics.put("requests", requests.get());
+            metrics.put("throttledRequests", throttledRequests.get());
+            metrics.put("rejectedRequests", rejectedRequests.get());
+            metrics.put("totalWaitTime", totalWaitTime.get());
+            metrics.put("retryAfterResponses", retryAfterResponses.get());
+            return metrics;
+        }
+    }
+}
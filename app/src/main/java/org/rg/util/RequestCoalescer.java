@@ -0,0 +1,216 @@
+package org.rg.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+//Single flight execution of identical requests: while a request is in flight the callers that ask for the same
+//key wait for it and share its result, which can also be reused for a short window after its completion
+@SuppressWarnings("unchecked")
+public class RequestCoalescer {
+    private static final Object DISCARDED_VALUE = new Object();
+    private final Map<String, Call> calls;
+    private final AtomicLong requests;
+    private final AtomicLong executions;
+    private final AtomicLong inFlightHits;
+    private final AtomicLong reuseHits;
+
+    public RequestCoalescer() {
+        this.calls = new ConcurrentHashMap<>();
+        this.requests = new AtomicLong();
+        this.executions = new AtomicLong();
+        this.inFlightHits = new AtomicLong();
+        this.reuseHits = new AtomicLong();
+    }
+
+    public <T> T execute(String key, Supplier<T> request) {
+        return execute(key, 0L, request);
+    }
+
+    public <T> T execute(String key, long reuseWindow, Supplier<T> request) {
+        requests.incrementAndGet();
+        while (true) {
+            Call call = calls.get(key);
+            if (call != null) {
+                if (call.isReusable()) {
+                    reuseHits.incrementAndGet();
+                    return (T)call.value;
+                }
+                if (!call.result.isDone()) {
+                    inFlightHits.incrementAndGet();
+                    Object value = join(call.result);
+                    if (value == DISCARDED_VALUE) {
+                        continue;
+                    }
+                    return (T)value;
+                }
+            }
+            Call newCall = new Call(call);
+            if (call == null ? calls.putIfAbsent(key, newCall) == null : calls.replace(key, call, newCall)) {
+                Object value = execute(key, newCall, reuseWindow, request);
+                if (value != DISCARDED_VALUE) {
+                    return (T)value;
+                }
+            }
+        }
+    }
+
+    private <T> Object execute(String key, Call call, long reuseWindow, Supplier<T> request) {
+        executions.incrementAndGet();
+        T value;
+        try {
+            value = request.get();
+        } catch (Throwable exc) {
+            return fail(key, call, exc);
+        }
+        return complete(key, call, reuseWindow, value);
+    }
+
+    //The asynchronous counterpart of execute: the callers that ask for a key in flight are given a
+    //dependent of its result instead of waiting for it
+    public <T> CompletableFuture<T> executeAsync(String key, long reuseWindow, Supplier<CompletableFuture<T>> request) {
+        requests.incrementAndGet();
+        return joinOrExecuteAsync(key, reuseWindow, request);
+    }
+
+    private <T> CompletableFuture<T> joinOrExecuteAsync(String key, long reuseWindow, Supplier<CompletableFuture<T>> request) {
+        while (true) {
+            Call call = calls.get(key);
+            if (call != null) {
+                if (call.isReusable()) {
+                    reuseHits.incrementAndGet();
+                    return CompletableFuture.completedFuture((T)call.value);
+                }
+                if (!call.result.isDone()) {
+                    inFlightHits.incrementAndGet();
+                    return call.result.thenCompose(value -> value == DISCARDED_VALUE ?
+                        joinOrExecuteAsync(key, reuseWindow, request) :
+                        CompletableFuture.completedFuture((T)value)
+                    );
+                }
+            }
+            Call newCall = new Call(call);
+            if (call == null ? calls.putIfAbsent(key, newCall) == null : calls.replace(key, call, newCall)) {
+                executions.incrementAndGet();
+                CompletableFuture<T> loading;
+                try {
+                    loading = request.get();
+                } catch (Throwable exc) {
+                    loading = new CompletableFuture<>();
+                    loading.completeExceptionally(exc);
+                }
+                return loading.handle((value, exc) ->
+                    exc != null ? fail(key, newCall, unwrap(exc)) : complete(key, newCall, reuseWindow, value)
+                ).thenCompose(value -> value == DISCARDED_VALUE ?
+                    joinOrExecuteAsync(key, reuseWindow, request) :
+                    CompletableFuture.completedFuture((T)value)
+                );
+            }
+        }
+    }
+
+    private Object complete(String key, Call call, long reuseWindow, Object value) {
+        //The result of a load that has been invalidated while in flight is stale: it is never published and
+        //both the caller and the waiting callers request it again
+        if (call.invalidated) {
+            call.result.complete(DISCARDED_VALUE);
+            return DISCARDED_VALUE;
+        }
+        call.complete(value, reuseWindow);
+        if (reuseWindow <= 0) {
+            //Without a reuse window the call is only shared while in flight: dropping it keeps the keys that
+            //are built from the request parameters from piling up
+            calls.remove(key, call);
+        }
+        return value;
+    }
+
+    private Object fail(String key, Call call, Throwable exc) {
+        //Failures are shared with the callers that are waiting but never reused
+        if (call.previousValue != null && !call.invalidated) {
+            Call expiredCall = new Call(call);
+            expiredCall.complete(call.previousValue, 0L);
+            calls.replace(key, call, expiredCall);
+        } else {
+            calls.remove(key, call);
+        }
+        call.result.completeExceptionally(exc);
+        return Throwables.sneakyThrow(exc);
+    }
+
+    //Returns the result of the latest successful execution even if its reuse window has expired (only the
+    //executions with a reuse window are retained)
+    public <T> T getIfPresent(String key) {
+        Call call = calls.get(key);
+        return call != null ? (T)call.getLatestValue() : null;
+    }
+
+    //The call in flight is flagged rather than tracked by key, so that nothing is retained for the keys that
+    //are no longer requested
+    public void invalidate(String key) {
+        Call call = calls.remove(key);
+        if (call != null) {
+            call.invalidated = true;
+        }
+    }
+
+    public long getDedupeHits() {
+        return inFlightHits.get() + reuseHits.get();
+    }
+
+    public Map<String, Long> getMetrics() {
+        Map<String, Long> metrics = new LinkedHashMap<>();
+        metrics.put("requests", requests.get());
+        metrics.put("executions", executions.get());
+        metrics.put("inFlightHits", inFlightHits.get());
+        metrics.put("reuseHits", reuseHits.get());
+        metrics.put("dedupeHits", getDedupeHits());
+        metrics.put("retainedKeys", (long)calls.size());
+        return metrics;
+    }
+
+    private static Object join(CompletableFuture<Object> result) {
+        try {
+            return result.join();
+        } catch (CompletionException exc) {
+            return Throwables.sneakyThrow(exc.getCause());
+        }
+    }
+
+    private static Throwable unwrap(Throwable exc) {
+        return exc instanceof CompletionException && exc.getCause() != null ? exc.getCause() : exc;
+    }
+
+    private static class Call {
+        private final CompletableFuture<Object> result;
+        private final Object previousValue;
+        private volatile Object value;
+        private volatile long expirationTime;
+        private volatile boolean completed;
+        private volatile boolean invalidated;
+
+        private Call(Call previousCall) {
+            this.result = new CompletableFuture<>();
+            this.previousValue = previousCall != null ? previousCall.getLatestValue() : null;
+        }
+
+        private void complete(Object value, long reuseWindow) {
+            this.value = value;
+            this.expirationTime = System.currentTimeMillis() + reuseWindow;
+            this.completed = true;
+            result.complete(value);
+        }
+
+        private Object getLatestValue() {
+            return completed ? value : previousValue;
+        }
+
+        private boolean isReusable() {
+            return completed && System.currentTimeMillis() < expirationTime;
+        }
+    }
+}
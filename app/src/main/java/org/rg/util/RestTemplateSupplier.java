@@ -1,12 +1,33 @@
 package org.rg.util;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
 import org.springframework.http.HttpRequest;
 import org.springframework.http.client.ClientHttpRequestExecution;
 import org.springframework.http.client.ClientHttpRequestInterceptor;
@@ -18,9 +39,28 @@ import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.HttpServerErrorException;
 import org.springframework.web.client.RestTemplate;
 
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+
 public class RestTemplateSupplier {
+    private static final long CONNECTION_TIME_TO_LIVE = 300000L;
+    private static final long DEFAULT_MAX_IDLE_TIME = 30000L;
+    private static final long DEFAULT_KEEP_ALIVE = 30000L;
+    private static final long EVICTION_INTERVAL = 5000L;
+    private static final int CONNECT_TIMEOUT = 10000;
+    private static final int READ_TIMEOUT = 30000;
     private static volatile RestTemplateSupplier sharedInstance;
+    private static volatile ScheduledExecutorService connectionEvictor;
     private volatile RestTemplate restTemplate;
+    private final RateLimiter rateLimiter;
+    private final TrafficMeter trafficMeter;
+    private volatile HttpTransport asyncHttpTransport;
+    private volatile PoolingHttpClientConnectionManager connectionManager;
+    private final Dispatcher dispatcher;
+    private final Collection<HttpRoute> exchangeRoutes;
+    private volatile int maxConnections;
+    private volatile long maxIdleTime;
     private Consumer<HttpClientBuilder> httpClientBuilderSetter;
     private boolean requestLoggerEnabled;
 
@@ -29,7 +69,14 @@ public class RestTemplateSupplier {
         this.httpClientBuilderSetter = httpClientBuilderSetter;
     }
 
-    private RestTemplateSupplier() {}
+    private RestTemplateSupplier() {
+        this.rateLimiter = new RateLimiter();
+        this.trafficMeter = new TrafficMeter();
+        this.dispatcher = new Dispatcher();
+        this.exchangeRoutes = new CopyOnWriteArraySet<>();
+        this.maxIdleTime = DEFAULT_MAX_IDLE_TIME;
+        setMaxConnections(16);
+    }
 
     public RestTemplateSupplier create() {
         return new RestTemplateSupplier();
@@ -69,18 +116,56 @@ public class RestTemplateSupplier {
         if (restTemplate == null) {
             synchronized(this) {
                 if (restTemplate == null) {
-                    HttpClientBuilder httpClientBuilder = HttpClientBuilder.create();
+                    PoolingHttpClientConnectionManager connectionManager =
+                        new PoolingHttpClientConnectionManager(CONNECTION_TIME_TO_LIVE, TimeUnit.MILLISECONDS);
+                    this.connectionManager = connectionManager;
+                    applyPoolLimits();
+                    HttpClientBuilder httpClientBuilder = HttpClientBuilder.create()
+                        .setConnectionManager(connectionManager)
+                        //Compressed responses are decoded by ContentDecoder so that the received bytes can be counted
+                        .disableContentCompression()
+                        .addInterceptorLast((HttpRequestInterceptor)(request, context) -> {
+                            if (!request.containsHeader("Accept-Encoding")) {
+                                request.addHeader("Accept-Encoding", ContentDecoder.ACCEPTED_ENCODINGS);
+                            }
+                        })
+                        .addInterceptorLast((HttpResponseInterceptor)(response, context) -> {
+                            HttpEntity entity = response.getEntity();
+                            if (entity != null) {
+                                HttpClientContext clientContext = HttpClientContext.adapt(context);
+                                response.setEntity(new DecodingEntity(entity, clientContext.getTargetHost().getHostName(), clientContext.getRequest().getRequestLine().getUri()));
+                                response.removeHeaders("Content-Encoding");
+                                response.removeHeaders("Content-Length");
+                            }
+                        })
+                        .setKeepAliveStrategy((response, context) -> {
+                            long keepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                            return keepAlive > 0 ? Math.min(keepAlive, maxIdleTime) : Math.min(DEFAULT_KEEP_ALIVE, maxIdleTime);
+                        })
+                        .setDefaultRequestConfig(
+                            RequestConfig.custom()
+                                .setConnectTimeout(CONNECT_TIMEOUT)
+                                .setSocketTimeout(READ_TIMEOUT)
+                                .setConnectionRequestTimeout(READ_TIMEOUT)
+                                .build()
+                        );
                     if (httpClientBuilderSetter != null) {
                         httpClientBuilderSetter.accept(httpClientBuilder);
                     }
                     RestTemplate restTemplate = new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClientBuilder.build()));
                     restTemplate.getMessageConverters().add(new MappingJackson2HttpMessageConverter());
+                    List<ClientHttpRequestInterceptor> interceptors = new CopyOnWriteArrayList<>();
+                    interceptors.add(rateLimiter);
+                    restTemplate.setInterceptors(interceptors);
                     restTemplate.setErrorHandler(new DefaultResponseErrorHandler() {
                         @Override
                         public void handleError(ClientHttpResponse httpResponse) throws IOException {
                             try {
                                 super.handleError(httpResponse);
-                            } catch (HttpClientErrorException | HttpServerErrorException exc) {
+                            } catch (HttpClientErrorException exc) {
+                                LoggerChain.getInstance().logDebug("Http response error: " + exc.getStatusCode().value() + " (" + exc.getStatusText() + "). Body: " + exc.getResponseBodyAsString());
+                                throw exc;
+                            } catch (HttpServerErrorException exc) {
                                 LoggerChain.getInstance().logError("Http response error: " + exc.getStatusCode().value() + " (" + exc.getStatusText() + "). Body: " + exc.getResponseBodyAsString());
                                 throw exc;
                             } catch (Throwable exc) {
@@ -91,12 +176,126 @@ public class RestTemplateSupplier {
                     });
                     this.restTemplate = restTemplate;
                     activateOrDeactivateRequestLogger();
+                    long evictionInterval = Math.min(EVICTION_INTERVAL, maxIdleTime);
+                    getConnectionEvictor().scheduleWithFixedDelay(() -> {
+                        connectionManager.closeExpiredConnections();
+                        connectionManager.closeIdleConnections(maxIdleTime, TimeUnit.MILLISECONDS);
+                    }, evictionInterval, evictionInterval, TimeUnit.MILLISECONDS);
                 }
             }
         }
         return restTemplate;
     }
 
+    public HttpTransport getAsyncHttpTransport() {
+        if (asyncHttpTransport == null) {
+            synchronized(this) {
+                if (asyncHttpTransport == null) {
+                    asyncHttpTransport = new OkHttpTransport(
+                        new OkHttpClient.Builder()
+                            .dispatcher(dispatcher)
+                            .connectionPool(new ConnectionPool(maxConnections, maxIdleTime, TimeUnit.MILLISECONDS))
+                            .connectTimeout(CONNECT_TIMEOUT, TimeUnit.MILLISECONDS)
+                            .readTimeout(READ_TIMEOUT, TimeUnit.MILLISECONDS)
+                            .build(),
+                        rateLimiter,
+                        trafficMeter
+                    );
+                }
+            }
+        }
+        return asyncHttpTransport;
+    }
+
+    public synchronized RestTemplateSupplier setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+        applyPoolLimits();
+        return this;
+    }
+
+    //The idle connections are closed after this time: it must be set before the first call to get
+    public synchronized RestTemplateSupplier setMaxIdleTime(long maxIdleTime) {
+        this.maxIdleTime = maxIdleTime;
+        return this;
+    }
+
+    public RestTemplateSupplier registerExchangeHost(String host) {
+        return registerExchangeHost(new HttpHost(host, 443, "https"));
+    }
+
+    public synchronized RestTemplateSupplier registerExchangeHost(HttpHost host) {
+        exchangeRoutes.add(toRoute(host));
+        applyPoolLimits();
+        return this;
+    }
+
+    public Map<String, Map<String, Long>> getConnectionPoolStats() {
+        Map<String, Map<String, Long>> stats = new LinkedHashMap<>();
+        PoolingHttpClientConnectionManager connectionManager = this.connectionManager;
+        if (connectionManager != null) {
+            stats.put("total", toMap(connectionManager.getTotalStats()));
+            for (HttpRoute route : exchangeRoutes) {
+                stats.put(route.getTargetHost().getHostName(), toMap(connectionManager.getStats(route)));
+            }
+        }
+        Map<String, Long> asyncStats = new LinkedHashMap<>();
+        asyncStats.put("running", (long)dispatcher.runningCallsCount());
+        asyncStats.put("queued", (long)dispatcher.queuedCallsCount());
+        stats.put("async", asyncStats);
+        return stats;
+    }
+
+    private synchronized void applyPoolLimits() {
+        //The engine threads only talk to a few exchange hosts: each of them may use the whole pool
+        dispatcher.setMaxRequests(maxConnections);
+        dispatcher.setMaxRequestsPerHost(maxConnections);
+        PoolingHttpClientConnectionManager connectionManager = this.connectionManager;
+        if (connectionManager == null) {
+            return;
+        }
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(Math.max(2, maxConnections / 4));
+        for (HttpRoute route : exchangeRoutes) {
+            connectionManager.setMaxPerRoute(route, maxConnections);
+        }
+    }
+
+    private static HttpRoute toRoute(HttpHost host) {
+        return new HttpRoute(host, null, "https".equalsIgnoreCase(host.getSchemeName()));
+    }
+
+    private static Map<String, Long> toMap(PoolStats poolStats) {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("leased", (long)poolStats.getLeased());
+        stats.put("pending", (long)poolStats.getPending());
+        stats.put("available", (long)poolStats.getAvailable());
+        stats.put("max", (long)poolStats.getMax());
+        return stats;
+    }
+
+    private static ScheduledExecutorService getConnectionEvictor() {
+        if (connectionEvictor == null) {
+            synchronized (RestTemplateSupplier.class) {
+                if (connectionEvictor == null) {
+                    connectionEvictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                        Thread thread = new Thread(runnable, "Idle connection evictor");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                }
+            }
+        }
+        return connectionEvictor;
+    }
+
+    public TrafficMeter getTrafficMeter() {
+        return trafficMeter;
+    }
+
+    public RateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
     public synchronized RestTemplateSupplier enableRequestLogger() {
         requestLoggerEnabled = true;
         activateOrDeactivateRequestLogger();
@@ -133,6 +332,69 @@ public class RestTemplateSupplier {
         }
     }
 
+    private class DecodingEntity extends HttpEntityWrapper {
+        private final String host;
+        private final String path;
+        private InputStream content;
+
+        private DecodingEntity(HttpEntity entity, String host, String uri) {
+            super(entity);
+            this.host = host;
+            int queryIndex = uri.indexOf('?');
+            this.path = queryIndex < 0 ? uri : uri.substring(0, queryIndex);
+        }
+
+        @Override
+        public synchronized InputStream getContent() throws IOException {
+            if (content == null) {
+                Header contentEncoding = wrappedEntity.getContentEncoding();
+                content = ContentDecoder.decode(
+                    wrappedEntity.getContent(),
+                    contentEncoding != null ? contentEncoding.getValue() : null,
+                    (wireBytes, decodedBytes) -> trafficMeter.record(host, path, wireBytes, decodedBytes)
+                );
+            }
+            return content;
+        }
+
+        @Override
+        @SuppressWarnings("deprecation")
+        public synchronized void consumeContent() throws IOException {
+            //Closing the decoding stream releases the connection and records the traffic of the response
+            if (content != null) {
+                content.close();
+            } else {
+                super.consumeContent();
+            }
+        }
+
+        @Override
+        public Header getContentEncoding() {
+            return null;
+        }
+
+        @Override
+        public long getContentLength() {
+            return -1;
+        }
+
+        @Override
+        public boolean isRepeatable() {
+            return false;
+        }
+
+        @Override
+        public void writeTo(OutputStream outputStream) throws IOException {
+            try (InputStream inputStream = getContent()) {
+                byte[] buffer = new byte[4096];
+                int read;
+                while ((read = inputStream.read(buffer)) != -1) {
+                    outputStream.write(buffer, 0, read);
+                }
+            }
+        }
+    }
+
     private static class RequestLogger implements ClientHttpRequestInterceptor {
         @Override
         public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
@@ -0,0 +1,56 @@
+package org.rg.util;
+
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.web.client.RestTemplate;
+
+public class RestTemplateTransport implements HttpTransport {
+    private final RestTemplate restTemplate;
+    private final Supplier<? extends Executor> executorSupplier;
+
+    public RestTemplateTransport(RestTemplate restTemplate, Supplier<? extends Executor> executorSupplier) {
+        this.restTemplate = restTemplate;
+        this.executorSupplier = executorSupplier;
+    }
+
+    @Override
+    public <T> T execute(URI uri, HttpMethod method, HttpHeaders headers, byte[] body, ResponseReader<T> responseReader) {
+        return restTemplate.execute(
+            uri,
+            method,
+            request -> {
+                request.getHeaders().putAll(headers);
+                if (body != null) {
+                    request.getBody().write(body);
+                }
+            },
+            response -> responseReader.read(response.getBody(), response.getHeaders()::getFirst)
+        );
+    }
+
+    @Override
+    public <T> CompletableFuture<T> executeAsync(URI uri, HttpMethod method, HttpHeaders headers, byte[] body, ResponseReader<T> responseReader) {
+        return CompletableFuture.supplyAsync(() -> execute(uri, method, headers, body, responseReader), executorSupplier.get());
+    }
+
+    @Override
+    public RateLimiter getRateLimiter() {
+        List<ClientHttpRequestInterceptor> interceptors = restTemplate.getInterceptors();
+        if (interceptors != null) {
+            for (ClientHttpRequestInterceptor interceptor : interceptors) {
+                if (interceptor instanceof RateLimiter) {
+                    return (RateLimiter)interceptor;
+                }
+            }
+        }
+        return null;
+    }
+
+}
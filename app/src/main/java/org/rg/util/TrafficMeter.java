@@ -0,0 +1,53 @@
+package org.rg.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class TrafficMeter {
+    private final Map<String, Counters> counters;
+
+    public TrafficMeter() {
+        this.counters = new ConcurrentHashMap<>();
+    }
+
+    public void record(String host, String path, long wireBytes, long decodedBytes) {
+        counters.computeIfAbsent(host + path, key -> new Counters()).add(wireBytes, decodedBytes);
+    }
+
+    public Map<String, Map<String, Long>> getMetrics() {
+        Map<String, Map<String, Long>> metrics = new TreeMap<>();
+        for (Map.Entry<String, Counters> endpointCounters : counters.entrySet()) {
+            metrics.put(endpointCounters.getKey(), endpointCounters.getValue().toMap());
+        }
+        return metrics;
+    }
+
+    private static class Counters {
+        private final AtomicLong responses = new AtomicLong();
+        private final AtomicLong wireBytes = new AtomicLong();
+        private final AtomicLong decodedBytes = new AtomicLong();
+        private volatile long lastWireBytes;
+        private volatile long lastDecodedBytes;
+
+        private void add(long wireBytes, long decodedBytes) {
+            responses.incrementAndGet();
+            this.wireBytes.addAndGet(wireBytes);
+            this.decodedBytes.addAndGet(decodedBytes);
+            lastWireBytes = wireBytes;
+            lastDecodedBytes = decodedBytes;
+        }
+
+        private Map<String, Long> toMap() {
+            Map<String, Long> metrics = new LinkedHashMap<>();
+            metrics.put("responses", responses.get());
+            metrics.put("wireBytes", wireBytes.get());
+            metrics.put("decodedBytes", decodedBytes.get());
+            metrics.put("lastWireBytes", lastWireBytes);
+            metrics.put("lastDecodedBytes", lastDecodedBytes);
+            return metrics;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package org.rg.util;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+
+public class WebSocketSession {
+    private static volatile OkHttpClient sharedClient;
+    private static volatile ScheduledExecutorService scheduler;
+    private static final long MIN_RECONNECTION_DELAY = 1000L;
+    private static final long MAX_RECONNECTION_DELAY = 60000L;
+
+    private final String url;
+    private final String name;
+    private Consumer<WebSocketSession> openListener;
+    private Consumer<String> messageListener;
+    private Runnable disconnectionListener;
+    private volatile WebSocket webSocket;
+    private volatile boolean connected;
+    private volatile boolean active;
+    private volatile long lastMessageTime;
+    private long reconnectionDelay;
+    private long maxSilenceTime;
+    private ScheduledFuture<?> reconnectionTask;
+    private ScheduledFuture<?> watchdogTask;
+
+    public WebSocketSession(String name, String url) {
+        this.name = name;
+        this.url = url;
+        this.reconnectionDelay = MIN_RECONNECTION_DELAY;
+    }
+
+    public WebSocketSession whenOpened(Consumer<WebSocketSession> openListener) {
+        this.openListener = openListener;
+        return this;
+    }
+
+    public WebSocketSession whenAMessageIsReceived(Consumer<String> messageListener) {
+        this.messageListener = messageListener;
+        return this;
+    }
+
+    public WebSocketSession whenDisconnected(Runnable disconnectionListener) {
+        this.disconnectionListener = disconnectionListener;
+        return this;
+    }
+
+    public WebSocketSession reconnectIfSilentFor(long millis) {
+        this.maxSilenceTime = millis;
+        return this;
+    }
+
+    public synchronized WebSocketSession open() {
+        if (active) {
+            return this;
+        }
+        active = true;
+        connect();
+        if (maxSilenceTime > 0) {
+            watchdogTask = getScheduler().scheduleWithFixedDelay(
+                this::reconnectIfSilent, maxSilenceTime, maxSilenceTime, TimeUnit.MILLISECONDS
+            );
+        }
+        return this;
+    }
+
+    public synchronized void close() {
+        if (!active) {
+            return;
+        }
+        active = false;
+        cancel(reconnectionTask);
+        cancel(watchdogTask);
+        WebSocket webSocket = this.webSocket;
+        this.webSocket = null;
+        if (webSocket != null) {
+            webSocket.close(1000, null);
+        }
+        setDisconnected();
+    }
+
+    public boolean send(String message) {
+        WebSocket webSocket = this.webSocket;
+        return webSocket != null && webSocket.send(message);
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    public long getLastMessageTime() {
+        return lastMessageTime;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    private synchronized void connect() {
+        if (!active) {
+            return;
+        }
+        webSocket = getClient().newWebSocket(new Request.Builder().url(url).build(), new Listener());
+    }
+
+    private synchronized void reconnect(WebSocket failedWebSocket) {
+        if (!active || failedWebSocket != webSocket) {
+            return;
+        }
+        webSocket = null;
+        setDisconnected();
+        cancel(reconnectionTask);
+        reconnectionTask = getScheduler().schedule(this::connect, reconnectionDelay, TimeUnit.MILLISECONDS);
+        reconnectionDelay = Math.min(reconnectionDelay * 2, MAX_RECONNECTION_DELAY);
+    }
+
+    private void reconnectIfSilent() {
+        WebSocket webSocket = this.webSocket;
+        if (connected && webSocket != null && System.currentTimeMillis() - lastMessageTime > maxSilenceTime) {
+            LoggerChain.getInstance().logDebug(name + " silent for more than " + maxSilenceTime + " milliseconds: reconnecting");
+            webSocket.cancel();
+            reconnect(webSocket);
+        }
+    }
+
+    private void setDisconnected() {
+        boolean wasConnected = connected;
+        connected = false;
+        if (wasConnected && disconnectionListener != null) {
+            disconnectionListener.run();
+        }
+    }
+
+    private void cancel(ScheduledFuture<?> task) {
+        if (task != null) {
+            task.cancel(false);
+        }
+    }
+
+    private class Listener extends WebSocketListener {
+
+        @Override
+        public void onOpen(WebSocket webSocket, Response response) {
+            synchronized (WebSocketSession.this) {
+                if (webSocket != WebSocketSession.this.webSocket) {
+                    webSocket.cancel();
+                    return;
+                }
+                connected = true;
+                lastMessageTime = System.currentTimeMillis();
+                reconnectionDelay = MIN_RECONNECTION_DELAY;
+            }
+            LoggerChain.getInstance().logDebug(name + " connected");
+            if (openListener != null) {
+                openListener.accept(WebSocketSession.this);
+            }
+        }
+
+        @Override
+        public void onMessage(WebSocket webSocket, String text) {
+            if (webSocket != WebSocketSession.this.webSocket) {
+                return;
+            }
+            lastMessageTime = System.currentTimeMillis();
+            if (messageListener != null) {
+                try {
+                    messageListener.accept(text);
+                } catch (Throwable exc) {
+                    LoggerChain.getInstance().logDebug(name + " could not process message: " + exc.getMessage());
+                }
+            }
+        }
+
+        @Override
+        public void onClosing(WebSocket webSocket, int code, String reason) {
+            webSocket.close(1000, null);
+        }
+
+        @Override
+        public void onClosed(WebSocket webSocket, int code, String reason) {
+            LoggerChain.getInstance().logDebug(name + " closed (" + code + "): reconnecting");
+            reconnect(webSocket);
+        }
+
+        @Override
+        public void onFailure(WebSocket webSocket, Throwable exc, Response response) {
+            LoggerChain.getInstance().logDebug(name + " failure: " + exc.getMessage());
+            reconnect(webSocket);
+        }
+    }
+
+    private static OkHttpClient getClient() {
+        if (sharedClient == null) {
+            synchronized (WebSocketSession.class) {
+                if (sharedClient == null) {
+                    sharedClient = new OkHttpClient.Builder()
+                        .pingInterval(20, TimeUnit.SECONDS)
+                        .build();
+                }
+            }
+        }
+        return sharedClient;
+    }
+
+    public static ScheduledExecutorService getScheduler() {
+        if (scheduler == null) {
+            synchronized (WebSocketSession.class) {
+                if (scheduler == null) {
+                    scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                        Thread thread = new Thread(runnable, "WebSocket session scheduler");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                }
+            }
+        }
+        return scheduler;
+    }
+}
@@ -0,0 +1,63 @@
+package org.rg.finance;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class BalanceTableTest {
+
+	@Test
+	public void keepsTheBalancesWhileGrowing() {
+		BalanceTable balanceTable = new BalanceTable(2);
+		for (int i = 0; i < 1000; i++) {
+			balanceTable.put("COIN" + i, i, i * 0.5D);
+		}
+		for (int i = 0; i < 1000; i += 2) {
+			balanceTable.add("COIN" + i, 0.25D);
+		}
+		assertEquals(1000, balanceTable.size());
+		for (int i = 0; i < 1000; i++) {
+			assertEquals(i + (i % 2 == 0 ? 0.25D : 0D), balanceTable.getQuantity("COIN" + i), 0D);
+			assertEquals(i * 0.5D, balanceTable.getStake("COIN" + i), 0D);
+		}
+		assertFalse(balanceTable.contains("COIN1000"));
+		assertEquals(0D, balanceTable.getQuantity("COIN1000"), 0D);
+	}
+
+	@Test
+	public void keepsTheAssetsNoLongerHeld() {
+		BalanceTable balanceTable = new BalanceTable();
+		balanceTable.add("BTC", 0.5D);
+		balanceTable.add("BTC", 0.25D);
+		balanceTable.put("ETH", 2D, 1D);
+		balanceTable.put("ETH", 0D, 0D);
+		Map<String, Double> quantities = new HashMap<>();
+		balanceTable.forEach((asset, quantity, stake) -> quantities.put(asset, quantity + stake));
+		Map<String, Double> expectedQuantities = new HashMap<>();
+		expectedQuantities.put("BTC", 0.75D);
+		expectedQuantities.put("ETH", 0D);
+		assertEquals(expectedQuantities, quantities);
+		assertTrue(balanceTable.contains("ETH"));
+	}
+
+	@Test
+	public void copiesAreIndependent() {
+		BalanceTable balanceTable = new BalanceTable();
+		balanceTable.put("BTC", 1D);
+		BalanceTable copy = new BalanceTable(balanceTable);
+		copy.put("BTC", 2D);
+		for (int i = 0; i < 100; i++) {
+			copy.put("COIN" + i, i);
+		}
+		assertEquals(1D, balanceTable.getQuantity("BTC"), 0D);
+		assertEquals(1, balanceTable.size());
+		assertEquals(2D, copy.getQuantity("BTC"), 0D);
+		assertEquals(101, copy.size());
+	}
+
+}
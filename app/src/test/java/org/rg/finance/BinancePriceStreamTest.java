@@ -0,0 +1,144 @@
+package org.rg.finance;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+public class BinancePriceStreamTest {
+    private static final long TIMEOUT = 10000L;
+
+    private MockWebServer server;
+    private BlockingQueue<WebSocket> serverSockets;
+    private BlockingQueue<String> receivedMessages;
+    private BinancePriceStream priceStream;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        serverSockets = new LinkedBlockingQueue<>();
+        receivedMessages = new LinkedBlockingQueue<>();
+        server.start();
+        priceStream = new BinancePriceStream(server.url("/stream").toString().replaceFirst("^http", "ws"));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        priceStream.close();
+        server.shutdown();
+    }
+
+    @Test
+    public void subscribesToTheMiniTickers() throws InterruptedException {
+        enqueueConnection();
+        priceStream.open();
+        assertEquals("/stream", server.takeRequest(TIMEOUT, TimeUnit.MILLISECONDS).getPath());
+        assertSubscription(receivedMessages.poll(TIMEOUT, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void readsThePricesOfTheMiniTickers() throws InterruptedException {
+        enqueueConnection();
+        priceStream.open();
+        WebSocket serverSocket = serverSockets.poll(TIMEOUT, TimeUnit.MILLISECONDS);
+        assertSubscription(receivedMessages.poll(TIMEOUT, TimeUnit.MILLISECONDS));
+        serverSocket.send("{\"result\":null,\"id\":1}");
+        serverSocket.send(
+            "{\"stream\":\"!miniTicker@arr\",\"data\":[" +
+                "{\"e\":\"24hrMiniTicker\",\"E\":1672515782136,\"s\":\"BTCUSDT\",\"c\":\"16541.77000000\",\"o\":\"16531.22000000\",\"h\":\"16628.98000000\",\"l\":\"16499.01000000\",\"v\":\"101.60010000\",\"q\":\"1680395.50735870\"}," +
+                "{\"e\":\"24hrMiniTicker\",\"E\":1672515782136,\"s\":\"ETHBTC\",\"c\":\"0.07202000\",\"o\":\"0.07190000\",\"h\":\"0.07230000\",\"l\":\"0.07180000\",\"v\":\"1000.00000000\",\"q\":\"72.02000000\"}" +
+            "]}"
+        );
+        assertEventually(() -> Double.valueOf(16541.77D).equals(priceStream.getPrice("BTCUSDT")));
+        assertEquals(Double.valueOf(0.07202D), priceStream.getPrice("ETHBTC"));
+        assertNull(priceStream.getPrice("ETHUSDT"));
+
+        serverSocket.send("{\"stream\":\"!miniTicker@arr\",\"data\":[{\"s\":\"BTCUSDT\",\"c\":\"16600.5\"},{\"s\":\"ETHUSDT\",\"c\":\"1200.25\"}]}");
+        assertEventually(() -> Double.valueOf(1200.25D).equals(priceStream.getPrice("ETHUSDT")));
+        assertEquals(Double.valueOf(16600.5D), priceStream.getPrice("BTCUSDT"));
+        assertEquals(Double.valueOf(0.07202D), priceStream.getPrice("ETHBTC"));
+    }
+
+    @Test
+    public void ignoresThePricesOnceTheyAreOld() throws InterruptedException {
+        enqueueConnection();
+        priceStream.setMaxPriceAge(500L);
+        priceStream.open();
+        WebSocket serverSocket = serverSockets.poll(TIMEOUT, TimeUnit.MILLISECONDS);
+        serverSocket.send("{\"stream\":\"!miniTicker@arr\",\"data\":[{\"s\":\"BTCUSDT\",\"c\":\"16541.77\"}]}");
+        assertEventually(() -> priceStream.getPrice("BTCUSDT") != null);
+        assertEventually(() -> priceStream.getPrice("BTCUSDT") == null);
+    }
+
+    @Test
+    public void resubscribesAfterTheServerDropsTheConnection() throws InterruptedException {
+        enqueueConnection();
+        enqueueConnection();
+        priceStream.open();
+        WebSocket firstServerSocket = serverSockets.poll(TIMEOUT, TimeUnit.MILLISECONDS);
+        assertNotNull(firstServerSocket);
+        assertSubscription(receivedMessages.poll(TIMEOUT, TimeUnit.MILLISECONDS));
+        firstServerSocket.send("{\"stream\":\"!miniTicker@arr\",\"data\":[{\"s\":\"BTCUSDT\",\"c\":\"16541.77\"}]}");
+        assertEventually(() -> priceStream.getPrice("BTCUSDT") != null);
+
+        firstServerSocket.close(1001, "Going away");
+        WebSocket secondServerSocket = serverSockets.poll(TIMEOUT, TimeUnit.MILLISECONDS);
+        assertNotNull(secondServerSocket);
+        assertSubscription(receivedMessages.poll(TIMEOUT, TimeUnit.MILLISECONDS));
+        assertEquals(2, server.getRequestCount());
+
+        secondServerSocket.send("{\"stream\":\"!miniTicker@arr\",\"data\":[{\"s\":\"BTCUSDT\",\"c\":\"16600.5\"}]}");
+        assertEventually(() -> Double.valueOf(16600.5D).equals(priceStream.getPrice("BTCUSDT")));
+    }
+
+    private void enqueueConnection() {
+        server.enqueue(new MockResponse().withWebSocketUpgrade(new WebSocketListener() {
+
+            @Override
+            public void onOpen(WebSocket webSocket, Response response) {
+                serverSockets.add(webSocket);
+            }
+
+            @Override
+            public void onMessage(WebSocket webSocket, String text) {
+                receivedMessages.add(text);
+            }
+
+            @Override
+            public void onClosing(WebSocket webSocket, int code, String reason) {
+                webSocket.close(1000, null);
+            }
+
+        }));
+    }
+
+    private static void assertSubscription(String message) {
+        assertNotNull(message);
+        assertTrue(message, message.matches("\\{\"method\":\"SUBSCRIBE\",\"params\":\\[\"!miniTicker@arr\"],\"id\":\\d+}"));
+    }
+
+    private static void assertEventually(Supplier<Boolean> condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (!condition.get()) {
+            assertTrue("Condition not met within " + TIMEOUT + " milliseconds", System.currentTimeMillis() < deadline);
+            Thread.sleep(10L);
+        }
+    }
+
+}
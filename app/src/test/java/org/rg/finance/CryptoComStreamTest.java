@@ -0,0 +1,322 @@
+package org.rg.finance;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.rg.finance.CryptoComWallet.ApiRequest;
+import org.rg.finance.CryptoComWallet.PriceType;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+public class CryptoComStreamTest {
+	private static final long TIMEOUT = 10000L;
+	private static final ObjectMapper objectMapper = new ObjectMapper();
+
+	private MockWebServer server;
+	private BlockingQueue<WebSocket> serverSockets;
+	private BlockingQueue<JsonNode> receivedMessages;
+	private BlockingQueue<String> balances;
+	private BlockingQueue<Boolean> connectionChanges;
+	private CryptoComStream stream;
+
+	@Before
+	public void setUp() throws IOException {
+		server = new MockWebServer();
+		serverSockets = new LinkedBlockingQueue<>();
+		receivedMessages = new LinkedBlockingQueue<>();
+		balances = new LinkedBlockingQueue<>();
+		connectionChanges = new LinkedBlockingQueue<>();
+		server.start();
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		if (stream != null) {
+			stream.close();
+		}
+		server.shutdown();
+	}
+
+	@Test
+	public void userStreamAuthenticatesAndThenSubscribesToTheBalances() throws InterruptedException {
+		CryptoComUserStream userStream = openUserStream();
+		WebSocket serverSocket = takeServerSocket();
+
+		JsonNode authRequest = takeMessage();
+		assertEquals("public/auth", authRequest.get("method").asText());
+		assertEquals("token", authRequest.get("api_key").asText());
+		assertEquals("signature" + authRequest.get("id").asLong(), authRequest.get("sig").asText());
+		assertTrue(authRequest.has("nonce"));
+		assertFalse(authRequest.has("params"));
+		assertFalse(userStream.isAuthenticated());
+
+		serverSocket.send("{\"id\":" + authRequest.get("id").asLong() + ",\"method\":\"public/auth\",\"code\":0}");
+		assertSubscription(takeMessage(), "user.balance");
+		assertEquals(Boolean.TRUE, connectionChanges.poll(TIMEOUT, TimeUnit.MILLISECONDS));
+		assertTrue(userStream.isAuthenticated());
+
+		serverSocket.send(
+			"{\"method\":\"subscribe\",\"result\":{\"subscription\":\"user.balance\",\"channel\":\"user.balance\",\"data\":[" +
+				"{\"currency\":\"CRO\",\"balance\":1000.5,\"available\":900.5,\"order\":0,\"stake\":100}," +
+				"{\"currency\":\"USDT\",\"balance\":25,\"available\":25,\"order\":0,\"stake\":0}" +
+			"]}}"
+		);
+		assertEquals("CRO 1000.5 100.0", balances.poll(TIMEOUT, TimeUnit.MILLISECONDS));
+		assertEquals("USDT 25.0 0.0", balances.poll(TIMEOUT, TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	public void userStreamReadsTheDataReceivedBeforeTheChannel() throws InterruptedException {
+		openUserStream();
+		WebSocket serverSocket = takeServerSocket();
+		JsonNode authRequest = takeMessage();
+		serverSocket.send("{\"id\":" + authRequest.get("id").asLong() + ",\"method\":\"public/auth\",\"code\":0}");
+		assertSubscription(takeMessage(), "user.balance");
+		assertEquals(Boolean.TRUE, connectionChanges.poll(TIMEOUT, TimeUnit.MILLISECONDS));
+
+		serverSocket.send(
+			"{\"method\":\"subscribe\",\"result\":{\"data\":[" +
+				"{\"currency\":\"CRO\",\"balance\":10,\"extra\":{\"nested\":[1,2]},\"stake\":2}" +
+			"],\"subscription\":\"user.balance\",\"channel\":\"user.balance\"}}"
+		);
+		assertEquals("CRO 10.0 2.0", balances.poll(TIMEOUT, TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	public void userStreamResyncsOnASequenceGapWithoutReconnecting() throws InterruptedException {
+		CryptoComUserStream userStream = openUserStream();
+		WebSocket serverSocket = takeServerSocket();
+		JsonNode authRequest = takeMessage();
+		serverSocket.send("{\"id\":" + authRequest.get("id").asLong() + ",\"method\":\"public/auth\",\"code\":0}");
+		assertSubscription(takeMessage(), "user.balance");
+		assertEquals(Boolean.TRUE, connectionChanges.poll(TIMEOUT, TimeUnit.MILLISECONDS));
+
+		serverSocket.send("{\"method\":\"subscribe\",\"result\":{\"channel\":\"user.balance\",\"data\":[{\"currency\":\"CRO\",\"balance\":1,\"u\":100,\"pu\":99}]}}");
+		serverSocket.send("{\"method\":\"subscribe\",\"result\":{\"channel\":\"user.balance\",\"data\":[{\"currency\":\"CRO\",\"balance\":2,\"u\":101,\"pu\":100}]}}");
+		assertEquals("CRO 1.0 0.0", balances.poll(TIMEOUT, TimeUnit.MILLISECONDS));
+		assertEquals("CRO 2.0 0.0", balances.poll(TIMEOUT, TimeUnit.MILLISECONDS));
+		assertNull(connectionChanges.poll());
+
+		serverSocket.send("{\"method\":\"subscribe\",\"result\":{\"channel\":\"user.balance\",\"data\":[{\"currency\":\"CRO\",\"balance\":4,\"u\":105,\"pu\":104}]}}");
+		assertEquals(Boolean.TRUE, connectionChanges.poll(TIMEOUT, TimeUnit.MILLISECONDS));
+		assertEquals("CRO 4.0 0.0", balances.poll(TIMEOUT, TimeUnit.MILLISECONDS));
+		assertTrue(userStream.isAuthenticated());
+		assertEquals(1, server.getRequestCount());
+	}
+
+	@Test
+	public void userStreamDoesNotSubscribeWhenTheAuthenticationFails() throws InterruptedException {
+		CryptoComUserStream userStream = openUserStream();
+		WebSocket serverSocket = takeServerSocket();
+		JsonNode authRequest = takeMessage();
+		serverSocket.send("{\"id\":" + authRequest.get("id").asLong() + ",\"method\":\"public/auth\",\"code\":10002,\"message\":\"UNAUTHORIZED\"}");
+		serverSocket.send("{\"id\":1,\"method\":\"public/heartbeat\",\"code\":0}");
+		//The heartbeat reply comes after the auth response has been processed
+		assertEquals("public/respond-heartbeat", takeMessage().get("method").asText());
+		assertNull(receivedMessages.poll());
+		assertNull(connectionChanges.poll());
+		assertFalse(userStream.isAuthenticated());
+	}
+
+	@Test
+	public void respondsToTheHeartbeats() throws InterruptedException {
+		openMarketStream();
+		WebSocket serverSocket = takeServerSocket();
+		serverSocket.send("{\"id\":1587523073344,\"method\":\"public/heartbeat\",\"code\":0}");
+		JsonNode response = takeMessage();
+		assertEquals("public/respond-heartbeat", response.get("method").asText());
+		assertEquals(1587523073344L, response.get("id").asLong());
+		assertTrue(stream.isAlive());
+	}
+
+	@Test
+	public void userStreamResyncsAfterAReconnection() throws InterruptedException {
+		CryptoComUserStream userStream = openUserStream();
+		enqueueConnection();
+		WebSocket firstServerSocket = takeServerSocket();
+		JsonNode firstAuthRequest = takeMessage();
+		firstServerSocket.send("{\"id\":" + firstAuthRequest.get("id").asLong() + ",\"method\":\"public/auth\",\"code\":0}");
+		assertSubscription(takeMessage(), "user.balance");
+		assertEquals(Boolean.TRUE, connectionChanges.poll(TIMEOUT, TimeUnit.MILLISECONDS));
+
+		firstServerSocket.close(1001, "Going away");
+		assertEquals(Boolean.FALSE, connectionChanges.poll(TIMEOUT, TimeUnit.MILLISECONDS));
+		assertFalse(userStream.isAuthenticated());
+
+		WebSocket secondServerSocket = takeServerSocket();
+		JsonNode secondAuthRequest = takeMessage();
+		assertEquals("public/auth", secondAuthRequest.get("method").asText());
+		assertTrue(secondAuthRequest.get("id").asLong() > firstAuthRequest.get("id").asLong());
+		secondServerSocket.send("{\"id\":" + secondAuthRequest.get("id").asLong() + ",\"method\":\"public/auth\",\"code\":0}");
+		assertSubscription(takeMessage(), "user.balance");
+		assertEquals(Boolean.TRUE, connectionChanges.poll(TIMEOUT, TimeUnit.MILLISECONDS));
+		assertTrue(userStream.isAuthenticated());
+		assertEquals(2, server.getRequestCount());
+	}
+
+	@Test
+	public void marketStreamReadsTheTickers() throws InterruptedException {
+		CryptoComMarketStream marketStream = openMarketStream("CRO_USDT");
+		WebSocket serverSocket = takeServerSocket();
+		assertSubscription(takeMessage(), "ticker.CRO_USDT");
+		assertNull(marketStream.getPrice("CRO_USDT", PriceType.LAST));
+
+		serverSocket.send(
+			"{\"id\":-1,\"method\":\"subscribe\",\"code\":0,\"result\":{\"instrument_name\":\"CRO_USDT\",\"subscription\":\"ticker.CRO_USDT\",\"channel\":\"ticker\",\"data\":[" +
+				"{\"i\":\"CRO_USDT\",\"b\":0.0601,\"k\":0.0603,\"a\":0.0602,\"t\":1607063914467,\"v\":100000,\"h\":0.07,\"l\":0.05,\"c\":0.001}" +
+			"]}}"
+		);
+		assertEventually(() -> marketStream.getPrice("CRO_USDT", PriceType.LAST) != null);
+		assertEquals(Double.valueOf(0.0602D), marketStream.getPrice("CRO_USDT", PriceType.LAST));
+		assertEquals(Double.valueOf(0.0601D), marketStream.getPrice("CRO_USDT", PriceType.BID));
+		assertEquals(Double.valueOf(0.0603D), marketStream.getPrice("CRO_USDT", PriceType.ASK));
+
+		marketStream.subscribeTicker("BTC_USDT");
+		assertSubscription(takeMessage(), "ticker.BTC_USDT");
+		serverSocket.send(
+			"{\"id\":-1,\"method\":\"subscribe\",\"code\":0,\"result\":{\"instrument_name\":\"BTC_USDT\",\"subscription\":\"ticker.BTC_USDT\",\"channel\":\"ticker\",\"data\":[" +
+				"{\"i\":\"BTC_USDT\",\"b\":null,\"k\":19000.5,\"a\":18999.5}" +
+			"]}}"
+		);
+		assertEventually(() -> marketStream.getPrice("BTC_USDT", PriceType.LAST) != null);
+		assertNull(marketStream.getPrice("BTC_USDT", PriceType.BID));
+		assertEquals(Double.valueOf(19000.5D), marketStream.getPrice("BTC_USDT", PriceType.ASK));
+	}
+
+	@Test
+	public void marketStreamResubscribesAfterAReconnection() throws InterruptedException {
+		CryptoComMarketStream marketStream = openMarketStream("CRO_USDT", "BTC_USDT");
+		enqueueConnection();
+		WebSocket firstServerSocket = takeServerSocket();
+		assertSubscription(takeMessage(), "ticker.CRO_USDT", "ticker.BTC_USDT");
+		firstServerSocket.send("{\"method\":\"subscribe\",\"result\":{\"channel\":\"ticker\",\"data\":[{\"i\":\"CRO_USDT\",\"a\":0.06}]}}");
+		assertEventually(() -> marketStream.getPrice("CRO_USDT", PriceType.LAST) != null);
+
+		firstServerSocket.close(1001, "Going away");
+		WebSocket secondServerSocket = takeServerSocket();
+		//The tickers of the dropped connection are not served while the stream is resubscribing
+		assertNull(marketStream.getPrice("CRO_USDT", PriceType.LAST));
+		assertSubscription(takeMessage(), "ticker.CRO_USDT", "ticker.BTC_USDT");
+		secondServerSocket.send("{\"method\":\"subscribe\",\"result\":{\"channel\":\"ticker\",\"data\":[{\"i\":\"CRO_USDT\",\"a\":0.07}]}}");
+		assertEventually(() -> Double.valueOf(0.07D).equals(marketStream.getPrice("CRO_USDT", PriceType.LAST)));
+	}
+
+	private CryptoComUserStream openUserStream() {
+		enqueueConnection();
+		CryptoComUserStream userStream = new CryptoComUserStream(
+			getUrl("/v2/user"),
+			id -> {
+				ApiRequest authRequest = new ApiRequest();
+				authRequest.setId(id);
+				authRequest.setMethod("public/auth");
+				authRequest.setApiKey("token");
+				authRequest.setNonce(System.currentTimeMillis());
+				authRequest.setSig("signature" + id);
+				return authRequest;
+			},
+			(currency, balance, stake) -> balances.add(currency + " " + balance + " " + stake),
+			connectionChanges::add
+		);
+		stream = userStream;
+		userStream.open();
+		return userStream;
+	}
+
+	private CryptoComMarketStream openMarketStream(String... instrumentNames) {
+		enqueueConnection();
+		CryptoComMarketStream marketStream = new CryptoComMarketStream(getUrl("/v2/market"));
+		for (String instrumentName : instrumentNames) {
+			marketStream.subscribeTicker(instrumentName);
+		}
+		stream = marketStream;
+		marketStream.open();
+		return marketStream;
+	}
+
+	private String getUrl(String path) {
+		return server.url(path).toString().replaceFirst("^http", "ws");
+	}
+
+	private void enqueueConnection() {
+		server.enqueue(new MockResponse().withWebSocketUpgrade(new WebSocketListener() {
+
+			@Override
+			public void onOpen(WebSocket webSocket, Response response) {
+				serverSockets.add(webSocket);
+			}
+
+			@Override
+			public void onMessage(WebSocket webSocket, String text) {
+				try {
+					receivedMessages.add(objectMapper.readTree(text));
+				} catch (IOException exc) {
+					throw new AssertionError(exc);
+				}
+			}
+
+			@Override
+			public void onClosing(WebSocket webSocket, int code, String reason) {
+				webSocket.close(1000, null);
+			}
+
+		}));
+	}
+
+	private WebSocket takeServerSocket() throws InterruptedException {
+		WebSocket serverSocket = serverSockets.poll(TIMEOUT, TimeUnit.MILLISECONDS);
+		assertNotNull(serverSocket);
+		return serverSocket;
+	}
+
+	private JsonNode takeMessage() throws InterruptedException {
+		JsonNode message = receivedMessages.poll(TIMEOUT, TimeUnit.MILLISECONDS);
+		assertNotNull(message);
+		return message;
+	}
+
+	private static void assertSubscription(JsonNode request, String... channels) {
+		assertEquals("subscribe", request.get("method").asText());
+		assertTrue(request.get("id").isNumber());
+		assertTrue(request.get("nonce").isNumber());
+		List<String> subscribedChannels = new ArrayList<>();
+		for (JsonNode channel : request.get("params").get("channels")) {
+			subscribedChannels.add(channel.asText());
+		}
+		Collections.sort(subscribedChannels);
+		List<String> expectedChannels = Arrays.asList(channels);
+		Collections.sort(expectedChannels);
+		assertEquals(expectedChannels, subscribedChannels);
+	}
+
+	private static void assertEventually(Supplier<Boolean> condition) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + TIMEOUT;
+		while (!condition.get()) {
+			assertTrue("Condition not met within " + TIMEOUT + " milliseconds", System.currentTimeMillis() < deadline);
+			Thread.sleep(10L);
+		}
+	}
+
+}
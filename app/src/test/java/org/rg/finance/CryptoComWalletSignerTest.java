@@ -0,0 +1,254 @@
+package org.rg.finance;
+
+import static org.junit.Assert.assertEquals;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.junit.Test;
+import org.rg.finance.CryptoComWallet.ApiRequest;
+import org.rg.util.Hex;
+
+public class CryptoComWalletSignerTest {
+	private static final String API_KEY = "token";
+	private static final String API_SECRET = "secretKey";
+
+	@Test
+	public void signsRequestsWithoutParams() {
+		ApiRequestCheck check = new ApiRequestCheck("public/auth", 11L, null, 1587846358253L);
+		assertEquals("public/auth11token1587846358253", check.referencePayload());
+		check.assertMatchesReference();
+	}
+
+	@Test
+	public void signsFlatParams() {
+		Map<String, Object> params = new LinkedHashMap<>();
+		params.put("side", "BUY");
+		params.put("instrument_name", "ETH_CRO");
+		params.put("quantity", 1.5D);
+		params.put("price", 12345L);
+		params.put("client_oid", 7);
+		params.put("time_in_force", null);
+		ApiRequestCheck check = new ApiRequestCheck("private/create-order", 1L, params, 1587846358253L);
+		assertEquals(
+			"private/create-order1token" +
+			"client_oid7instrument_nameETH_CROprice12345quantity1.5sideBUYtime_in_forcenull" +
+			"1587846358253",
+			check.referencePayload()
+		);
+		check.assertMatchesReference();
+	}
+
+	@Test
+	public void signsDoublesAsPlainStrings() {
+		double[] values = {0D, -0D, 1D, -1D, 100D, 0.1D, 1.5D, 1e-7D, 1.25e-12D, 1.5e10D, 1e21D, 123456789.125D, Double.MIN_VALUE, Double.MAX_VALUE};
+		for (double value : values) {
+			Map<String, Object> params = new HashMap<>();
+			params.put("value", value);
+			new ApiRequestCheck("private/get-order-history", 2L, params, 3L).assertMatchesReference();
+		}
+	}
+
+	@Test
+	public void signsLongsAndIntegers() {
+		long[] values = {0L, 1L, -1L, 9L, 10L, Integer.MAX_VALUE, Integer.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE, Long.MIN_VALUE + 1};
+		for (long value : values) {
+			Map<String, Object> params = new HashMap<>();
+			params.put("long", value);
+			if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+				params.put("int", (int)value);
+			}
+			new ApiRequestCheck("private/get-trades", value, params, value).assertMatchesReference();
+		}
+	}
+
+	@Test
+	public void signsNestedMapsAndLists() {
+		Map<String, Object> deepest = new TreeMap<>();
+		deepest.put("b", 2L);
+		deepest.put("a", 1.0D);
+		Map<String, Object> inner = new HashMap<>();
+		inner.put("z", Arrays.asList(1L, 2.50D, "three", deepest));
+		inner.put("y", deepest);
+		inner.put("x", null);
+		Map<String, Object> params = new HashMap<>();
+		params.put("nested", inner);
+		params.put("list", Arrays.asList("a", 1, 0.000001D, Arrays.asList("b", Arrays.asList("c", 4L))));
+		params.put("empty_list", Collections.emptyList());
+		params.put("empty_map", Collections.emptyMap());
+		params.put("amount", 1e-7D);
+		new ApiRequestCheck("private/create-order-list", 42L, params, 1587846358253L).assertMatchesReference();
+	}
+
+	@Test
+	public void signsMapsBeyondTheMaxLevelWithTheirStringForm() {
+		Map<String, Object> level3 = new LinkedHashMap<>();
+		level3.put("second", 2.0D);
+		level3.put("first", null);
+		Map<String, Object> level2 = new HashMap<>();
+		level2.put("deep", level3);
+		Map<String, Object> level1 = new HashMap<>();
+		level1.put("deeper", level2);
+		Map<String, Object> params = new HashMap<>();
+		params.put("root", level1);
+		params.put("list", Collections.singletonList(Collections.singletonList(Collections.singletonList(Arrays.asList(1.0D, 2L)))));
+		new ApiRequestCheck("private/deep", 5L, params, 6L).assertMatchesReference();
+	}
+
+	@Test
+	public void signsNonAsciiValues() {
+		Map<String, Object> params = new HashMap<>();
+		params.put("label", "caf\u00e9 \u20ac \ud83d\ude80 \ud83d");
+		params.put("\u00e8", "key");
+		new ApiRequestCheck("private/label", 7L, params, 8L).assertMatchesReference();
+	}
+
+	@Test
+	public void signsNullFields() {
+		new ApiRequestCheck(null, null, null, null).assertMatchesReference();
+		new ApiRequestCheck("public/auth", null, new HashMap<>(), null).assertMatchesReference();
+	}
+
+	@Test
+	public void staticParamsEncodingIsReused() {
+		Map<String, Object> staticParams = new HashMap<>();
+		staticParams.put("currency", "CRO");
+		staticParams.put("page_size", 20);
+		staticParams.put("min_value", 0.5D);
+		Map<String, Object> params = Collections.unmodifiableMap(staticParams);
+		for (long id = 0; id < 3; id++) {
+			ApiRequestCheck check = new ApiRequestCheck("private/get-account-summary", id, params, 1000L + id);
+			assertEquals(check.reference(), check.sign(true));
+			check.assertMatchesReference();
+		}
+	}
+
+	@Test
+	public void matchesKnownSignatures() {
+		Map<String, Object> params = new HashMap<>();
+		params.put("order_id", "337843775021233500");
+		ApiRequestCheck check = new ApiRequestCheck("private/get-order-detail", 11L, params, 1587846358253L);
+		assertEquals("36eab774dfb6f67ea37711799f16a88d1ac01ebccdcc87b7a3ef700a335fe883", check.sign(false));
+		assertEquals("36eab774dfb6f67ea37711799f16a88d1ac01ebccdcc87b7a3ef700a335fe883", check.sign(true));
+
+		Map<String, Object> firstOrder = new HashMap<>();
+		firstOrder.put("instrument_name", "CRO_USDT");
+		firstOrder.put("side", "BUY");
+		firstOrder.put("price", 0.06D);
+		firstOrder.put("quantity", 1000L);
+		Map<String, Object> secondOrder = new HashMap<>();
+		secondOrder.put("instrument_name", "CRO_USDT");
+		secondOrder.put("side", "SELL");
+		secondOrder.put("price", 1.5e-7D);
+		secondOrder.put("quantity", 1e10D);
+		secondOrder.put("client_oid", null);
+		params = new HashMap<>();
+		params.put("contingency_type", "LIST");
+		params.put("order_list", Arrays.asList(firstOrder, secondOrder));
+		check = new ApiRequestCheck("private/create-order-list", 42L, params, 1587846358253L);
+		assertEquals(
+			"private/create-order-list42token" +
+			"contingency_typeLISTorder_list" +
+			"instrument_nameCRO_USDTprice0.06quantity1000sideBUY" +
+			"client_oidnullinstrument_nameCRO_USDTprice0.00000015quantity10000000000sideSELL" +
+			"1587846358253",
+			check.referencePayload()
+		);
+		assertEquals("2f71becceff94ef6d8b476a6cc93f577ceeb31b700bddd29c8bb9ed20e9494af", check.sign(false));
+		assertEquals("2f71becceff94ef6d8b476a6cc93f577ceeb31b700bddd29c8bb9ed20e9494af", check.sign(true));
+	}
+
+	private static String sign(ApiRequest apiRequest, boolean staticParams) {
+		return new HmacSigner(API_SECRET).sign(payload -> CryptoComWallet.Signer.writePayload(payload, apiRequest, staticParams));
+	}
+
+	private static String hmac(String data) {
+		try {
+			Mac mac = Mac.getInstance("HmacSHA256");
+			mac.init(new SecretKeySpec(API_SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+			return Hex.encode(mac.doFinal(data.getBytes(StandardCharsets.UTF_8)), true);
+		} catch (Exception exc) {
+			throw new AssertionError(exc);
+		}
+	}
+
+	private static class ApiRequestCheck {
+		private final ApiRequest apiRequest;
+
+		private ApiRequestCheck(String method, Long id, Map<String, Object> params, Long nonce) {
+			apiRequest = new ApiRequest();
+			apiRequest.setMethod(method);
+			apiRequest.setId(id);
+			apiRequest.setApiKey(API_KEY);
+			apiRequest.setParams(params);
+			apiRequest.setNonce(nonce);
+		}
+
+		private String sign(boolean staticParams) {
+			return CryptoComWalletSignerTest.sign(apiRequest, staticParams);
+		}
+
+		private String reference() {
+			return hmac(referencePayload());
+		}
+
+		private void assertMatchesReference() {
+			String expected = reference();
+			assertEquals(referencePayload(), expected, sign(false));
+			if (apiRequest.getParams() != null) {
+				assertEquals(referencePayload(), expected, sign(true));
+			}
+		}
+
+		//The encoder that was used before the signing payload was written straight into the hmac buffer
+		private String referencePayload() {
+			String paramsString = "";
+			if (apiRequest.getParams() != null) {
+				StringBuilder paramsStringBuilder = new StringBuilder();
+				appendParamString(paramsStringBuilder, apiRequest.getParams(), 0);
+				paramsString += paramsStringBuilder.toString();
+			}
+			return apiRequest.getMethod() + apiRequest.getId() + apiRequest.getApiKey() +
+				paramsString + (apiRequest.getNonce() == null ? "" : apiRequest.getNonce());
+		}
+
+		@SuppressWarnings("unchecked")
+		private static void appendParamString(StringBuilder paramsStringBuilder, Object paramObject, int level) {
+			if (level >= 3) {
+				paramsStringBuilder.append(paramObject.toString());
+				return;
+			}
+			if (paramObject instanceof Map) {
+				TreeMap<String, Object> params = new TreeMap<>((Map<String, Object>)paramObject);
+				for (Map.Entry<String, Object> entry : params.entrySet()) {
+					if (entry.getValue() instanceof Double) {
+						paramsStringBuilder.append(entry.getKey())
+							.append((new BigDecimal(entry.getValue().toString())).stripTrailingZeros().toPlainString());
+					} else if ((entry.getValue() instanceof List) || (entry.getValue() instanceof Map)) {
+						paramsStringBuilder.append(entry.getKey());
+						appendParamString(paramsStringBuilder, entry.getValue(), level + 1);
+					} else {
+						paramsStringBuilder.append(entry.getKey()).append(entry.getValue());
+					}
+				}
+			} else if (paramObject instanceof List) {
+				for (Object value : (List<?>)paramObject) {
+					appendParamString(paramsStringBuilder, value, level + 1);
+				}
+			} else {
+				paramsStringBuilder.append(paramObject.toString());
+			}
+		}
+	}
+
+}
@@ -0,0 +1,136 @@
+package org.rg.finance;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.junit.Test;
+import org.rg.util.Hex;
+
+public class HmacSignerTest {
+
+	//The RFC 4231 test cases whose keys are plain ASCII: the secret is encoded in UTF-8, so the keys made of
+	//bytes above 0x7F (test cases 3, 6 and 7) cannot be expressed
+	@Test
+	public void rfc4231TestCase1() {
+		HmacSigner signer = new HmacSigner(repeat('\u000b', 20));
+		assertEquals("b0344c61d8db38535ca8afceaf0bf12b881dc200c9833da726e9376c2e32cff7", signer.sign("Hi There"));
+	}
+
+	@Test
+	public void rfc4231TestCase2() {
+		HmacSigner signer = new HmacSigner("Jefe");
+		assertEquals("5bdcc146bf60754e6a042426089575c75a003f089d2739839dec58b964ec3843", signer.sign("what do ya want for nothing?"));
+	}
+
+	@Test
+	public void rfc4231TestCase4() {
+		StringBuilder key = new StringBuilder();
+		for (char character = 0x01; character <= 0x19; character++) {
+			key.append(character);
+		}
+		byte[] data = new byte[50];
+		Arrays.fill(data, (byte)0xcd);
+		HmacSigner signer = new HmacSigner(key.toString());
+		assertEquals("82558a389a443c0ea4cc819899f2083a85f0faa3e578f8077a2e3ff46729665b", signer.sign(payload -> payload.append(data)));
+	}
+
+	@Test
+	public void rfc4231TestCase5() {
+		HmacSigner signer = new HmacSigner(repeat('\u000c', 20));
+		assertTrue(signer.sign("Test With Truncation").startsWith("a3b6167473100ee06e0c796c2955552b"));
+	}
+
+	@Test
+	public void signsLikeMac() {
+		HmacSigner signer = new HmacSigner("secretKey");
+		assertEquals(hmac("secretKey", ""), signer.sign(""));
+		assertEquals(hmac("secretKey", "public/auth11token1587846358253"), signer.sign("public/auth11token1587846358253"));
+		assertEquals(hmac("secretKey", "caf\u00e9 \u20ac \ud83d\ude80"), signer.sign("caf\u00e9 \u20ac \ud83d\ude80"));
+		//Lone surrogates are replaced as String.getBytes does
+		assertEquals(hmac("secretKey", "a\ud83db\ude80"), signer.sign("a\ud83db\ude80"));
+		String longData = repeat('x', 5000);
+		assertEquals(hmac("secretKey", longData), signer.sign(longData));
+		assertEquals(hmac("secretKey", "short"), signer.sign("short"));
+	}
+
+	@Test
+	public void writesLongsAsDecimalStrings() {
+		HmacSigner signer = new HmacSigner("secretKey");
+		long[] values = {0L, 7L, -7L, 10L, 1587846358253L, Long.MAX_VALUE, Long.MIN_VALUE, Long.MIN_VALUE + 1};
+		for (long value : values) {
+			assertEquals(hmac("secretKey", "id" + value + "end"), signer.sign(payload -> payload.append("id").append(value).append("end")));
+		}
+	}
+
+	@Test
+	public void signsConcurrently() throws Exception {
+		String secret = "concurrentSecret";
+		HmacSigner signer = new HmacSigner(secret);
+		int threadCount = 8;
+		int iterations = 500;
+		ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+		CountDownLatch start = new CountDownLatch(1);
+		try {
+			Collection<Future<List<String>>> results = new ArrayList<>();
+			for (int thread = 0; thread < threadCount; thread++) {
+				int threadIndex = thread;
+				Callable<List<String>> task = () -> {
+					List<String> mismatches = new ArrayList<>();
+					start.await();
+					for (int i = 0; i < iterations; i++) {
+						//Lengths up to a few kilobytes, so that the reusable buffers grow while other threads sign
+						String data = threadIndex + ":" + i + ":" + repeat((char)('a' + threadIndex), (i * 13) % 3000);
+						long nonce = ((long)threadIndex << 32) + i;
+						String expected = hmac(secret, data + nonce);
+						String signature = (i % 2 == 0) ?
+							signer.sign(data + nonce) :
+							signer.sign(payload -> payload.append(data).append(nonce));
+						if (!expected.equals(signature)) {
+							mismatches.add(data.substring(0, Math.min(data.length(), 16)) + nonce);
+						}
+					}
+					return mismatches;
+				};
+				results.add(executor.submit(task));
+			}
+			start.countDown();
+			for (Future<List<String>> result : results) {
+				assertEquals(new ArrayList<>(), result.get(60, TimeUnit.SECONDS));
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static String hmac(String secret, String data) {
+		try {
+			Mac mac = Mac.getInstance("HmacSHA256");
+			mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+			return Hex.encode(mac.doFinal(data.getBytes(StandardCharsets.UTF_8)), true);
+		} catch (Exception exc) {
+			throw new AssertionError(exc);
+		}
+	}
+
+	private static String repeat(char character, int count) {
+		char[] characters = new char[count];
+		Arrays.fill(characters, character);
+		return new String(characters);
+	}
+
+}
@@ -0,0 +1,122 @@
+package org.rg.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+import org.junit.Test;
+
+public class ContentDecoderTest {
+    private static final byte[] DATA = buildData();
+
+    @Test
+    public void decodesGzipAndCountsTheTrailer() throws IOException {
+        byte[] body = gzip(DATA);
+        long[] counts = new long[2];
+        try (InputStream inputStream = ContentDecoder.decode(new ByteArrayInputStream(body), "gzip", (wireBytes, decodedBytes) -> {
+            counts[0] = wireBytes;
+            counts[1] = decodedBytes;
+        })) {
+            assertArrayEquals(DATA, ContentDecoder.readAllBytes(inputStream));
+        }
+        assertEquals(body.length, counts[0]);
+        assertEquals(DATA.length, counts[1]);
+    }
+
+    @Test
+    public void checksTheTrailerWhenTheReaderStopsAtTheLastByte() throws IOException {
+        byte[] body = gzip(DATA);
+        long[] wireCount = new long[1];
+        try (InputStream inputStream = ContentDecoder.decode(new ByteArrayInputStream(body), "x-gzip", (wireBytes, decodedBytes) -> wireCount[0] = wireBytes)) {
+            assertArrayEquals(DATA, readExactly(inputStream, DATA.length));
+        }
+        assertEquals(body.length, wireCount[0]);
+
+        byte[] corruptBody = Arrays.copyOf(body, body.length);
+        corruptBody[corruptBody.length - 8] ^= 1;
+        try (InputStream inputStream = ContentDecoder.decode(new ByteArrayInputStream(corruptBody), "gzip", (wireBytes, decodedBytes) -> {})) {
+            readExactly(inputStream, DATA.length);
+            fail();
+        } catch (ZipException exc) {
+            assertEquals("Corrupt GZIP trailer: CRC mismatch", exc.getMessage());
+        }
+    }
+
+    @Test
+    public void rejectsCorruptTrailers() throws IOException {
+        byte[] body = gzip(DATA);
+        byte[] wrongCrc = Arrays.copyOf(body, body.length);
+        wrongCrc[wrongCrc.length - 5] ^= 0x40;
+        assertDecodingFails(wrongCrc, ZipException.class, "Corrupt GZIP trailer: CRC mismatch");
+        byte[] wrongSize = Arrays.copyOf(body, body.length);
+        wrongSize[wrongSize.length - 4]++;
+        assertDecodingFails(wrongSize, ZipException.class, "Corrupt GZIP trailer: size mismatch");
+        assertDecodingFails(Arrays.copyOf(body, body.length - 3), EOFException.class, "Unexpected end of GZIP stream");
+    }
+
+    @Test
+    public void decodesDeflateAndPlainBodies() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (DeflaterOutputStream deflaterOutputStream = new DeflaterOutputStream(outputStream)) {
+            deflaterOutputStream.write(DATA);
+        }
+        try (InputStream inputStream = ContentDecoder.decode(new ByteArrayInputStream(outputStream.toByteArray()), "deflate", (wireBytes, decodedBytes) -> {})) {
+            assertArrayEquals(DATA, ContentDecoder.readAllBytes(inputStream));
+        }
+        try (InputStream inputStream = ContentDecoder.decode(new ByteArrayInputStream(DATA), null, (wireBytes, decodedBytes) -> {})) {
+            assertArrayEquals(DATA, ContentDecoder.readAllBytes(inputStream));
+        }
+    }
+
+    //Like a parser that stops at the end of the document without waiting for the end of the stream
+    private static byte[] readExactly(InputStream inputStream, int length) throws IOException {
+        byte[] data = new byte[length];
+        int offset = 0;
+        while (offset < length) {
+            int read = inputStream.read(data, offset, length - offset);
+            if (read == -1) {
+                throw new EOFException();
+            }
+            offset += read;
+        }
+        return data;
+    }
+
+    private static void assertDecodingFails(byte[] body, Class<? extends IOException> exceptionClass, String message) {
+        try (InputStream inputStream = ContentDecoder.decode(new ByteArrayInputStream(body), "gzip", (wireBytes, decodedBytes) -> {})) {
+            ContentDecoder.readAllBytes(inputStream);
+            fail();
+        } catch (IOException exc) {
+            assertEquals(exceptionClass, exc.getClass());
+            assertEquals(message, exc.getMessage());
+        }
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream)) {
+            gzipOutputStream.write(data);
+        }
+        return outputStream.toByteArray();
+    }
+
+    private static byte[] buildData() {
+        StringBuilder data = new StringBuilder("{\"balances\":[");
+        for (int i = 0; i < 2000; i++) {
+            data.append(i > 0 ? "," : "").append("{\"asset\":\"COIN").append(i).append("\",\"free\":\"").append(i * 0.125D).append("\",\"locked\":\"0.00000000\"}");
+        }
+        return data.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,71 @@
+package org.rg.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class HexTest {
+
+	@Test
+	public void encodesWholeArrays() {
+		byte[] data = {0x00, 0x01, 0x0f, 0x10, 0x7f, (byte)0x80, (byte)0xab, (byte)0xff};
+		assertEquals("00010f107f80abff", Hex.encode(data, true));
+		assertEquals("00010F107F80ABFF", Hex.encode(data, false));
+		assertEquals("", Hex.encode(new byte[0], true));
+	}
+
+	@Test
+	public void encodesEveryByteValue() {
+		byte[] data = new byte[256];
+		StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (byte)i;
+			expected.append(String.format("%02x", i));
+		}
+		assertEquals(expected.toString(), Hex.encode(data, true));
+		assertEquals(expected.toString().toUpperCase(), Hex.encode(data, false));
+	}
+
+	@Test
+	public void encodesRangesAtTheGivenOffset() {
+		byte[] data = {0x12, 0x34, (byte)0xab, (byte)0xcd, (byte)0xef, 0x56};
+		char[] out = new char[10];
+		Arrays.fill(out, '-');
+		assertEquals(6, Hex.encode(data, 2, 3, true, out, 3));
+		assertArrayEquals("---abcdef-".toCharArray(), out);
+		assertEquals(6, Hex.encode(data, 2, 3, false, out, 3));
+		assertArrayEquals("---ABCDEF-".toCharArray(), out);
+		assertEquals(2, Hex.encode(data, 5, 1, true, out, 0));
+		assertArrayEquals("56-ABCDEF-".toCharArray(), out);
+	}
+
+	@Test
+	public void encodesEmptyRanges() {
+		char[] out = "----".toCharArray();
+		assertEquals(0, Hex.encode(new byte[] {0x01, 0x02}, 1, 0, true, out, 4));
+		assertArrayEquals("----".toCharArray(), out);
+	}
+
+	@Test
+	public void encodesRangesLikeTheWholeArrayVersion() {
+		byte[] data = new byte[64];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (byte)(i * 37);
+		}
+		char[] out = new char[data.length << 1];
+		for (int offset = 0; offset < data.length; offset += 7) {
+			int length = data.length - offset;
+			assertEquals(length << 1, Hex.encode(data, offset, length, true, out, 0));
+			assertEquals(Hex.encode(Arrays.copyOfRange(data, offset, data.length), true), new String(out, 0, length << 1));
+		}
+	}
+
+	@Test(expected = ArrayIndexOutOfBoundsException.class)
+	public void rejectsTooSmallOutputs() {
+		Hex.encode(new byte[] {0x01, 0x02}, 0, 2, true, new char[3], 0);
+	}
+
+}
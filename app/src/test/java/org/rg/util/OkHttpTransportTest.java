@@ -0,0 +1,128 @@
+package org.rg.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+public class OkHttpTransportTest {
+    private static final long DELAY = 400L;
+    private static final int MAX_REQUESTS = 4;
+    private static final int REQUEST_COUNT = 12;
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private MockWebServer server;
+    private OkHttpClient client;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        //Every response is delayed as a slow exchange would do: the requests can only overlap on different connections
+        server.setDispatcher(new okhttp3.mockwebserver.Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return new MockResponse()
+                    .setHeadersDelay(DELAY / 2, TimeUnit.MILLISECONDS)
+                    .setBodyDelay(DELAY / 2, TimeUnit.MILLISECONDS)
+                    .setBody("{\"path\":\"" + request.getPath() + "\"}");
+            }
+        });
+        server.start();
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(MAX_REQUESTS);
+        dispatcher.setMaxRequestsPerHost(MAX_REQUESTS);
+        client = new OkHttpClient.Builder().dispatcher(dispatcher).build();
+        executor = Executors.newFixedThreadPool(MAX_REQUESTS);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        executor.shutdownNow();
+        client.dispatcher().executorService().shutdownNow();
+        client.connectionPool().evictAll();
+        server.shutdown();
+    }
+
+    @Test
+    public void overlapsTheRequestsOnTheDispatcher() throws Exception {
+        OkHttpTransport transport = new OkHttpTransport(client, null, null);
+        long startTime = System.currentTimeMillis();
+        List<CompletableFuture<String>> results = executeAll(transport);
+        //No thread waits for the responses
+        for (CompletableFuture<String> result : results) {
+            assertFalse(result.isDone());
+        }
+        int maxRunningCalls = 0;
+        while (!allOf(results).isDone()) {
+            maxRunningCalls = Math.max(maxRunningCalls, client.dispatcher().runningCallsCount());
+            assertTrue(System.currentTimeMillis() - startTime < REQUEST_COUNT * DELAY * 2);
+            Thread.sleep(5L);
+        }
+        long elapsedTime = System.currentTimeMillis() - startTime;
+        assertResults(results);
+        assertEquals(MAX_REQUESTS, maxRunningCalls);
+        assertTrue("Elapsed " + elapsedTime, elapsedTime >= (REQUEST_COUNT / MAX_REQUESTS) * DELAY);
+        assertTrue("Elapsed " + elapsedTime, elapsedTime < REQUEST_COUNT * DELAY / 2);
+    }
+
+    @Test
+    public void fallsBackToTheRestTemplate() throws Exception {
+        RestTemplateSupplier restTemplateSupplier = RestTemplateSupplier.getSharedInstance().create();
+        RestTemplateTransport transport = new RestTemplateTransport(restTemplateSupplier.get(), () -> executor);
+        assertSame(restTemplateSupplier.getRateLimiter(), transport.getRateLimiter());
+        long startTime = System.currentTimeMillis();
+        List<CompletableFuture<String>> results = executeAll(transport);
+        allOf(results).get(REQUEST_COUNT * DELAY * 2, TimeUnit.MILLISECONDS);
+        long elapsedTime = System.currentTimeMillis() - startTime;
+        assertResults(results);
+        //The blocking requests overlap too, one for each thread of the executor
+        assertTrue("Elapsed " + elapsedTime, elapsedTime < REQUEST_COUNT * DELAY / 2);
+    }
+
+    private List<CompletableFuture<String>> executeAll(HttpTransport transport) {
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        for (int i = 0; i < REQUEST_COUNT; i++) {
+            results.add(transport.executeAsync(server.url("/api/v3/ticker/price?symbol=COIN" + i).uri(), HttpMethod.GET, new HttpHeaders(), null, OkHttpTransportTest::readPath));
+        }
+        return results;
+    }
+
+    private static CompletableFuture<Void> allOf(List<CompletableFuture<String>> results) {
+        return CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0]));
+    }
+
+    private static void assertResults(List<CompletableFuture<String>> results) {
+        for (int i = 0; i < REQUEST_COUNT; i++) {
+            assertEquals("/api/v3/ticker/price?symbol=COIN" + i, results.get(i).join());
+        }
+    }
+
+    private static String readPath(InputStream body) throws IOException {
+        return OBJECT_MAPPER.readTree(body).get("path").asText();
+    }
+
+}
@@ -0,0 +1,148 @@
+package org.rg.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class RequestCoalescerTest {
+    private final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void sharesTheCallInFlight() throws Exception {
+        RequestCoalescer requestCoalescer = new RequestCoalescer();
+        AtomicInteger executions = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Future<Integer>> results = new ArrayList<>();
+        results.add(executor.submit(() -> requestCoalescer.execute("key", () -> {
+            started.countDown();
+            await(release);
+            return executions.incrementAndGet();
+        })));
+        started.await(5, TimeUnit.SECONDS);
+        for (int i = 0; i < 4; i++) {
+            results.add(executor.submit(() -> requestCoalescer.execute("key", executions::incrementAndGet)));
+        }
+        CompletableFuture<Integer> asyncResult = requestCoalescer.executeAsync("key", 0L, () -> CompletableFuture.completedFuture(executions.incrementAndGet()));
+        waitFor(() -> requestCoalescer.getMetrics().get("inFlightHits") == 5L);
+        release.countDown();
+        for (Future<Integer> result : results) {
+            assertEquals(Integer.valueOf(1), result.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(Integer.valueOf(1), asyncResult.get(5, TimeUnit.SECONDS));
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    public void reusesResultsWithinTheReuseWindow() {
+        RequestCoalescer requestCoalescer = new RequestCoalescer();
+        AtomicInteger executions = new AtomicInteger();
+        assertEquals(Integer.valueOf(1), requestCoalescer.execute("key", 60000L, executions::incrementAndGet));
+        assertEquals(Integer.valueOf(1), requestCoalescer.execute("key", 60000L, executions::incrementAndGet));
+        assertEquals(Integer.valueOf(1), requestCoalescer.getIfPresent("key"));
+        requestCoalescer.invalidate("key");
+        assertNull(requestCoalescer.getIfPresent("key"));
+        assertEquals(Integer.valueOf(2), requestCoalescer.execute("key", 60000L, executions::incrementAndGet));
+    }
+
+    @Test
+    public void discardsTheResultsInvalidatedWhileInFlight() throws Exception {
+        RequestCoalescer requestCoalescer = new RequestCoalescer();
+        AtomicInteger executions = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<Integer> result = executor.submit(() -> requestCoalescer.execute("key", 60000L, () -> {
+            int execution = executions.incrementAndGet();
+            if (execution == 1) {
+                started.countDown();
+                await(release);
+            }
+            return execution;
+        }));
+        started.await(5, TimeUnit.SECONDS);
+        requestCoalescer.invalidate("key");
+        release.countDown();
+        assertEquals(Integer.valueOf(2), result.get(5, TimeUnit.SECONDS));
+        assertEquals(Integer.valueOf(2), requestCoalescer.getIfPresent("key"));
+
+        CompletableFuture<Integer> loading = new CompletableFuture<>();
+        CompletableFuture<Integer> asyncResult = requestCoalescer.executeAsync("asyncKey", 60000L, () ->
+            executions.incrementAndGet() == 3 ? loading : CompletableFuture.completedFuture(4)
+        );
+        requestCoalescer.invalidate("asyncKey");
+        loading.complete(3);
+        assertEquals(Integer.valueOf(4), asyncResult.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void sharesFailuresWithoutReusingThem() {
+        RequestCoalescer requestCoalescer = new RequestCoalescer();
+        AtomicInteger executions = new AtomicInteger();
+        assertEquals(Integer.valueOf(1), requestCoalescer.execute("key", 0L, executions::incrementAndGet));
+        try {
+            requestCoalescer.execute("key", 60000L, () -> {
+                executions.incrementAndGet();
+                throw new IllegalStateException("failed");
+            });
+            fail();
+        } catch (IllegalStateException exc) {
+            assertEquals("failed", exc.getMessage());
+        }
+        assertEquals(Integer.valueOf(3), requestCoalescer.execute("key", 60000L, executions::incrementAndGet));
+    }
+
+    @Test
+    public void retainsOnlyTheKeysWithAReuseWindow() {
+        RequestCoalescer requestCoalescer = new RequestCoalescer();
+        //The keys built from the symbols requested in every cycle change all the time
+        for (int cycle = 0; cycle < 10000; cycle++) {
+            String key = "GET /api/v3/ticker/price?symbols=BTCUSDT,ETHUSDT," + cycle;
+            requestCoalescer.execute(key, () -> 1);
+            requestCoalescer.executeAsync(key + ",async", 0L, () -> CompletableFuture.completedFuture(1)).join();
+            requestCoalescer.invalidate(key + ",neverRequested");
+            requestCoalescer.execute("GET /api/v3/account", 60000L, () -> 1);
+            requestCoalescer.invalidate("GET /api/v3/account");
+            requestCoalescer.execute("GET /sapi/v1/staking/position", 60000L, () -> 1);
+        }
+        assertEquals(Long.valueOf(1L), requestCoalescer.getMetrics().get("retainedKeys"));
+        requestCoalescer.invalidate("GET /sapi/v1/staking/position");
+        assertEquals(Long.valueOf(0L), requestCoalescer.getMetrics().get("retainedKeys"));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException exc) {
+            Throwables.sneakyThrow(exc);
+        }
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000L;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(5L);
+        }
+    }
+
+}
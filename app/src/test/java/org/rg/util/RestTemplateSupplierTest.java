@@ -0,0 +1,104 @@
+package org.rg.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.apache.http.HttpHost;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.client.RestTemplate;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+public class RestTemplateSupplierTest {
+    private static final int MAX_CONNECTIONS = 4;
+    private static final int REQUEST_COUNT = 6;
+    private static final long MAX_IDLE_TIME = 300L;
+    private static final long TIMEOUT = 10000L;
+
+    private MockWebServer server;
+    private CountDownLatch release;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        release = new CountDownLatch(1);
+        //The responses are delayed until the test has read the stats of the saturated pool
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                release.await(TIMEOUT, TimeUnit.MILLISECONDS);
+                return new MockResponse().setBody("{}");
+            }
+        });
+        server.start();
+        executor = Executors.newFixedThreadPool(REQUEST_COUNT);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        release.countDown();
+        executor.shutdownNow();
+        server.shutdown();
+    }
+
+    @Test
+    public void reportsTheSaturatedRouteAndEvictsTheIdleConnections() throws Exception {
+        RestTemplateSupplier restTemplateSupplier = RestTemplateSupplier.getSharedInstance().create()
+            .setMaxConnections(MAX_CONNECTIONS)
+            .setMaxIdleTime(MAX_IDLE_TIME)
+            .registerExchangeHost(new HttpHost(server.getHostName(), server.getPort(), "http"));
+        RestTemplate restTemplate = restTemplateSupplier.get();
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < REQUEST_COUNT; i++) {
+            URI uri = server.url("/api/v3/account?request=" + i).uri();
+            results.add(executor.submit(() ->
+                restTemplate.execute(uri, HttpMethod.GET, null, response -> ContentDecoder.readAllBytes(response.getBody()).length + "")
+            ));
+        }
+        Supplier<Map<String, Long>> routeStats = () -> restTemplateSupplier.getConnectionPoolStats().get(server.getHostName());
+        assertEventually(() -> routeStats.get().get("pending") == REQUEST_COUNT - MAX_CONNECTIONS);
+        Map<String, Long> stats = routeStats.get();
+        assertEquals(Long.valueOf(MAX_CONNECTIONS), stats.get("max"));
+        assertEquals(Long.valueOf(MAX_CONNECTIONS), stats.get("leased"));
+        assertEquals(Long.valueOf(0L), stats.get("available"));
+
+        release.countDown();
+        for (Future<String> result : results) {
+            assertEquals("2", result.get(TIMEOUT, TimeUnit.MILLISECONDS));
+        }
+        stats = routeStats.get();
+        assertEquals(Long.valueOf(0L), stats.get("leased"));
+        assertEquals(Long.valueOf(0L), stats.get("pending"));
+        assertEquals(Long.valueOf(MAX_CONNECTIONS), stats.get("available"));
+        assertEventually(() -> routeStats.get().get("available") == 0L);
+        assertEquals(Long.valueOf(0L), restTemplateSupplier.getConnectionPoolStats().get("total").get("available"));
+    }
+
+    private static void assertEventually(Supplier<Boolean> condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (!condition.get()) {
+            assertTrue("Condition not met within " + TIMEOUT + " milliseconds", System.currentTimeMillis() < deadline);
+            Thread.sleep(10L);
+        }
+    }
+
+}
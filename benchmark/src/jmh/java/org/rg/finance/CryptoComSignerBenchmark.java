@@ -0,0 +1,101 @@
+package org.rg.finance;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+//The previous TreeMap, BigDecimal and String based encoder of the Crypto.com params against the streaming one,
+//with and without the memoized encoding of the static params: all of them are signed with the same HmacSigner
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CryptoComSignerBenchmark {
+	private static final String API_KEY = "vmPUZE6mv9SD5VNHk4HlWFsOr6aKE2zvsw0MuIgwCIPy6utIco14y7Ju91duEh8A";
+	private static final String API_SECRET = "NhqPtmdSJYdKjVHjA7PZj4Mge3R5YNiP1e3UZjInClVN65XAbvqqM6A7H5fATj0j";
+
+	@Param({"private/get-account-summary", "private/get-order-history", "private/create-order-list"})
+	public String method;
+
+	private HmacSigner signer;
+	private CryptoComWallet.ApiRequest apiRequest;
+	private long nonce;
+
+	@Setup
+	public void setup() {
+		signer = new HmacSigner(API_SECRET);
+		apiRequest = new CryptoComWallet.ApiRequest();
+		apiRequest.setMethod(method);
+		apiRequest.setApiKey(API_KEY);
+		apiRequest.setParams(buildParams(method));
+		nonce = 1587846358253L;
+	}
+
+	@Benchmark
+	public String legacyEncoder() {
+		updateApiRequest();
+		return signer.sign(LegacySigners.getCryptoComPayload(apiRequest));
+	}
+
+	@Benchmark
+	public String streamingEncoder() {
+		updateApiRequest();
+		return signer.sign(payload -> CryptoComWallet.Signer.writePayload(payload, apiRequest, false));
+	}
+
+	@Benchmark
+	public String memoizedStreamingEncoder() {
+		updateApiRequest();
+		return signer.sign(payload -> CryptoComWallet.Signer.writePayload(payload, apiRequest, true));
+	}
+
+	private void updateApiRequest() {
+		long id = ++nonce;
+		apiRequest.setId(id);
+		apiRequest.setNonce(id);
+	}
+
+	//The params are not modified after this point, as the memoized encoding requires
+	private static Map<String, Object> buildParams(String method) {
+		if (method.equals("private/get-account-summary")) {
+			//The same instance used by CryptoComWallet for the account summary requests
+			return Collections.emptyMap();
+		}
+		Map<String, Object> params = new HashMap<>();
+		if (method.equals("private/get-order-history")) {
+			params.put("instrument_name", "CRO_USDT");
+			params.put("start_ts", 1587846358253L);
+			params.put("end_ts", 1587932758253L);
+			params.put("page_size", 20);
+			params.put("page", 0);
+		} else {
+			Map<String, Object> firstOrder = new HashMap<>();
+			firstOrder.put("instrument_name", "CRO_USDT");
+			firstOrder.put("side", "BUY");
+			firstOrder.put("type", "LIMIT");
+			firstOrder.put("price", 0.06D);
+			firstOrder.put("quantity", 1000L);
+			Map<String, Object> secondOrder = new HashMap<>();
+			secondOrder.put("instrument_name", "CRO_USDT");
+			secondOrder.put("side", "SELL");
+			secondOrder.put("type", "STOP_LOSS");
+			secondOrder.put("price", 1.5e-7D);
+			secondOrder.put("quantity", 1e10D);
+			secondOrder.put("trigger_price", 0.055D);
+			params.put("contingency_type", "OCO");
+			params.put("order_list", Arrays.asList(Collections.unmodifiableMap(firstOrder), Collections.unmodifiableMap(secondOrder)));
+		}
+		return Collections.unmodifiableMap(params);
+	}
+
+}
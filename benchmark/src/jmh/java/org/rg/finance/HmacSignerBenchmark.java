@@ -0,0 +1,82 @@
+package org.rg.finance;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+//Signing of the two exchange formats with the previous per-request Mac and with the shared HmacSigner
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class HmacSignerBenchmark {
+	private static final String API_KEY = "vmPUZE6mv9SD5VNHk4HlWFsOr6aKE2zvsw0MuIgwCIPy6utIco14y7Ju91duEh8A";
+	private static final String API_SECRET = "NhqPtmdSJYdKjVHjA7PZj4Mge3R5YNiP1e3UZjInClVN65XAbvqqM6A7H5fATj0j";
+
+	private HmacSigner signer;
+	private Map<String, String> binanceQueryParams;
+	private CryptoComWallet.ApiRequest cryptoComRequest;
+	private long timestamp;
+
+	@Setup
+	public void setup() {
+		signer = new HmacSigner(API_SECRET);
+		binanceQueryParams = new LinkedHashMap<>();
+		binanceQueryParams.put("asset", "BTC");
+		binanceQueryParams.put("recvWindow", "60000");
+		cryptoComRequest = new CryptoComWallet.ApiRequest();
+		cryptoComRequest.setMethod("private/get-account-summary");
+		cryptoComRequest.setApiKey(API_KEY);
+		cryptoComRequest.setParams(Collections.emptyMap());
+		timestamp = 1499827319559L;
+	}
+
+	@Benchmark
+	public String binanceQueryWithNewMac() {
+		return LegacySigners.signBinanceQuery(buildBinanceQuery(), API_SECRET);
+	}
+
+	@Benchmark
+	public String binanceQueryWithHmacSigner() {
+		return signer.sign(buildBinanceQuery());
+	}
+
+	@Benchmark
+	public String cryptoComRequestWithNewMac() {
+		updateCryptoComRequest();
+		return LegacySigners.signCryptoComRequest(cryptoComRequest, API_SECRET);
+	}
+
+	@Benchmark
+	public String cryptoComRequestWithHmacSigner() {
+		updateCryptoComRequest();
+		return signer.sign(payload -> CryptoComWallet.Signer.writePayload(payload, cryptoComRequest, true));
+	}
+
+	private String buildBinanceQuery() {
+		binanceQueryParams.put("timestamp", String.valueOf(++timestamp));
+		StringBuilder queryString = new StringBuilder();
+		for (Map.Entry<String, String> mapElement : binanceQueryParams.entrySet()) {
+			if (queryString.length() > 0) {
+				queryString.append('&');
+			}
+			queryString.append(mapElement.getKey()).append('=').append(mapElement.getValue());
+		}
+		return queryString.toString();
+	}
+
+	private void updateCryptoComRequest() {
+		long nonce = ++timestamp;
+		cryptoComRequest.setId(nonce);
+		cryptoComRequest.setNonce(nonce);
+	}
+
+}
@@ -0,0 +1,86 @@
+package org.rg.finance;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.rg.util.Hex;
+
+//The signing code that was used before HmacSigner: a new Mac for every request and the payload built as a String
+class LegacySigners {
+	private static final String HMAC_SHA256 = "HmacSHA256";
+	private static final int MAX_LEVEL = 3;
+
+	static String signBinanceQuery(String data, String secret) {
+		byte[] hmacSha256;
+		try {
+			SecretKeySpec secretKeySpec = new SecretKeySpec(secret.getBytes(), HMAC_SHA256);
+			Mac mac = Mac.getInstance(HMAC_SHA256);
+			mac.init(secretKeySpec);
+			hmacSha256 = mac.doFinal(data.getBytes());
+		} catch (Exception e) {
+			throw new RuntimeException("Failed to calculate hmac-sha256", e);
+		}
+		return Hex.encode(hmacSha256, true);
+	}
+
+	static String signCryptoComRequest(CryptoComWallet.ApiRequest apiRequestJson, String secret) {
+		try {
+			Mac mac = Mac.getInstance(HMAC_SHA256);
+			mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), HMAC_SHA256));
+			byte[] macData = mac.doFinal(getCryptoComPayload(apiRequestJson).getBytes(StandardCharsets.UTF_8));
+			return Hex.encode(macData, true);
+		} catch (Exception e) {
+			throw new RuntimeException("Failed to calculate hmac-sha256", e);
+		}
+	}
+
+	static String getCryptoComPayload(CryptoComWallet.ApiRequest apiRequestJson) {
+		String paramsString = "";
+		if (apiRequestJson.getParams() != null) {
+			paramsString += getParamString(apiRequestJson.getParams());
+		}
+		return apiRequestJson.getMethod() + apiRequestJson.getId() + apiRequestJson.getApiKey()
+			+ paramsString + (apiRequestJson.getNonce() == null ? "" : apiRequestJson.getNonce());
+	}
+
+	static String getParamString(Object paramObject) {
+		StringBuilder sb = new StringBuilder();
+		appendParamString(sb, paramObject, 0);
+		return sb.toString();
+	}
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private static void appendParamString(StringBuilder paramsStringBuilder, Object paramObject, int level) {
+		if (level >= MAX_LEVEL) {
+			paramsStringBuilder.append(paramObject.toString());
+			return;
+		}
+		if (paramObject instanceof Map) {
+			TreeMap<String, Object> params = new TreeMap<>((Map)paramObject);
+			for (Map.Entry<String, Object> entry : params.entrySet()) {
+				if (entry.getValue() instanceof Double) {
+					paramsStringBuilder.append(entry.getKey())
+						.append((new BigDecimal(entry.getValue().toString())).stripTrailingZeros().toPlainString());
+				} else if ((entry.getValue() instanceof List) || (entry.getValue() instanceof Map)) {
+					paramsStringBuilder.append(entry.getKey());
+					appendParamString(paramsStringBuilder, entry.getValue(), level + 1);
+				} else {
+					paramsStringBuilder.append(entry.getKey()).append(entry.getValue());
+				}
+			}
+		} else if (paramObject instanceof List) {
+			for (Object o : (List)paramObject) {
+				appendParamString(paramsStringBuilder, o, level + 1);
+			}
+		} else {
+			paramsStringBuilder.append(paramObject.toString());
+		}
+	}
+
+}